@@ -1,5 +1,7 @@
 package org.seismotech.laespe;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
@@ -48,6 +50,13 @@ Benchmark                                  (cols)  (poly)  (rows)   Mode  Cnt
 .sumAllSpecialized   10000       6     100  thrpt    2  6058.967          ops/s
 .sumAllSpecialized   10000      10     100  thrpt    2  5521.901          ops/s
 
+ * Parameter {@code engine} selects the {@link SpecializationEngine}:
+ * {@code loader} ({@link LoaderEngine}),
+ * {@code devirt} (a devirtualizing {@link LoaderEngine})
+ * or {@code hidden} ({@link HiddenClassEngine}).
+ * Besides steady state throughput ({@code sumAll*}),
+ * {@code specialization} measures the latency of a specialization
+ * and the metaspace retained by each copy is reported at tear down.
  */
 @Fork(value = 1)
 @Warmup(iterations = 2, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
@@ -55,6 +64,8 @@ Benchmark                                  (cols)  (poly)  (rows)   Mode  Cnt
 @State(Scope.Benchmark)
 public class AutoWideHierarchyBenchmark {
 
+  @Param({"loader", "devirt", "hidden"})
+  String engine;
   @Param({"1", "2", "3", "6", "10"})
   int poly;
   @Param({"100"})
@@ -62,45 +73,78 @@ public class AutoWideHierarchyBenchmark {
   @Param({"10000"})
   int cols;
 
+  static final int COPIES = 1000;
+
   Random rnd;
   Seq[] dmat;
   Seq[] smat;
+  BoundedSpecializer hisp;
+  long metaspacePerCopy;
 
   @Setup
   public void doSetup()
   throws ClassNotFoundException, InstantiationRelatedException {
-    final BoundedSpecializer hisp
-      = new BoundedSpecializer(Seq.class, Instantiation.class);
+    hisp = specializer(Seq.class);
     final BoundedSpecializer hispAbs
-      = new BoundedSpecializer(AbsSeq.class, Instantiation.class);
-
-    @SuppressWarnings("unchecked")
-    final Function<int[],Seq>[] sharedFacts = new Function[poly];
-    @SuppressWarnings("unchecked")
-    final Function<int[],Seq>[] specFacts = new Function[poly];
-    for (int i = 0; i < poly; i++) {
-      @SuppressWarnings("unchecked")
-      final Function<int[],Seq> shared = Instantiation.fastFactory(
-        hispAbs.specialized(IntSeq.class),
-        Function.class, "apply", int[].class);
-      @SuppressWarnings("unchecked")
-      final Function<int[],Seq> spec = Instantiation.fastFactory(
-        hisp.specialized(IntSeq.class),
-        Function.class, "apply", int[].class);
-      sharedFacts[i] = shared;
-      specFacts[i] = spec;
-    }
+      = specializer(AbsSeq.class);
+
+    final SpecializedFactories<Function<int[],Seq>> sharedFacts
+      = hispAbs.factories(IntSeq.class, poly,
+          Function.class, "apply", int[].class);
+    final SpecializedFactories<Function<int[],Seq>> specFacts
+      = hisp.factories(IntSeq.class, poly,
+          Function.class, "apply", int[].class);
 
     rnd = new Random();
     dmat = buildMatrix(sharedFacts);
     smat = buildMatrix(specFacts);
+    metaspacePerCopy = metaspacePerCopy();
+  }
+
+  @TearDown
+  public void doTearDown() {
+    System.out.println("Metaspace per " + engine + " copy: "
+        + metaspacePerCopy + " bytes");
+  }
+
+  BoundedSpecializer specializer(Class<?>... roots) {
+    final ClassSet toSpecialize = new HierarchyClassSet(roots);
+    switch (engine) {
+    case "loader":
+      return new BoundedSpecializer(new LoaderEngine(toSpecialize));
+    case "devirt":
+      return new BoundedSpecializer(LoaderEngine.devirtualizing(toSpecialize,
+              new ResourceBytecodeSource(toSpecialize.classLoader())));
+    case "hidden":
+      return new BoundedSpecializer(new HiddenClassEngine(toSpecialize));
+    default:
+      throw new IllegalArgumentException("Unknown engine " + engine);
+    }
   }
 
-  Seq[] buildMatrix(Function<int[],Seq>[] facts) {
+  long metaspacePerCopy()
+  throws ClassNotFoundException {
+    final Class<?>[] copies = new Class<?>[COPIES];
+    System.gc();
+    final long before = metaspaceUsed();
+    for (int i = 0; i < COPIES; i++) copies[i] = hisp.specialized(IntSeq.class);
+    final long after = metaspaceUsed();
+    return (after - before) / copies.length;
+  }
+
+  static long metaspaceUsed() {
+    for (final MemoryPoolMXBean pool:
+             ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getName().equals("Metaspace")) return pool.getUsage().getUsed();
+    }
+    return 0;
+  }
+
+  Seq[] buildMatrix(SpecializedFactories<Function<int[],Seq>> facts) {
     final Seq[] mat = new Seq[rows];
     for (int i = 0; i < rows; i++) {
-      final int disc = rnd.nextInt(facts.length);
-      mat[i] = ints(cols, facts[disc]);
+      final int disc = rnd.nextInt(facts.size());
+      mat[i] = ints(cols, facts.get(disc));
     }
     return mat;
   }
@@ -122,6 +166,14 @@ public class AutoWideHierarchyBenchmark {
     return sumAll(smat);
   }
 
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Class<?> specialization()
+  throws ClassNotFoundException {
+    return hisp.specialized(IntSeq.class);
+  }
+
   private static long sumAll(Seq[] mat) {
     long s = 0;
     for (int i = 0; i < mat.length; i++) s += mat[i].sum();
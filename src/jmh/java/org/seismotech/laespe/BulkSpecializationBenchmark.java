@@ -0,0 +1,55 @@
+package org.seismotech.laespe;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.seismotech.laespe.example.widehierarchy.*;
+
+/**
+ * Boot time cost of {@link BoundedSpecializer#specializeAll}
+ * creating {@code copies} specializations of each {@code Seq} leaf class,
+ * as a function of the number of {@code threads} doing it.
+ * With {@code threads} 1, specialization is serial.
+ */
+@Fork(value = 1)
+@Warmup(iterations = 3, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 2, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class BulkSpecializationBenchmark {
+
+  static final Collection<Class<?>> LEAVES = Arrays.asList(
+    ByteSeq.class, ShortSeq.class, IntSeq.class, LongSeq.class);
+
+  @Param({"1", "2", "4", "8"})
+  int threads;
+  @Param({"250"})
+  int copies;
+
+  BoundedSpecializer hisp;
+  ForkJoinPool pool;
+
+  @Setup
+  public void doSetup() {
+    hisp = new BoundedSpecializer(Seq.class);
+    pool = new ForkJoinPool(threads);
+  }
+
+  @TearDown
+  public void doTearDown() {
+    pool.shutdown();
+  }
+
+  @Benchmark
+  public Map<Class<?>,List<Class<?>>> specializeAll()
+  throws ClassNotFoundException {
+    return hisp.specializeAll(LEAVES, copies, pool);
+  }
+}
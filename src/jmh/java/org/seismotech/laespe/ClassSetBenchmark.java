@@ -0,0 +1,90 @@
+package org.seismotech.laespe;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.seismotech.laespe.example.widehierarchy.*;
+
+/**
+ * Cost of {@link ClassSet} membership, with and without
+ * {@link CachingClassSet}, and with a {@link NameClassSet} composite
+ * deciding from names alone.
+ *
+ * <p>{@code membership} asks for the names a specializing loader typically
+ * sees while copying {@code IntSeq}.
+ * {@code specializations} creates {@link Batch#copies} specializations per
+ * operation, with a class set that lives for the whole trial:
+ * the cost of membership questions is amortized as the number of
+ * specializations grows.
+ * Its secondary result {@code copied} is the time per copy
+ * (see {@link Copied}), comparable across batch sizes.
+ */
+@Fork(value = 1)
+@Warmup(iterations = 3, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 2, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ClassSetBenchmark {
+
+  static final String[] NAMES = {
+    IntSeq.class.getName(), AbsSeq.class.getName(), Seq.class.getName(),
+    LongSeq.class.getName(), Object.class.getName(), String.class.getName(),
+    Instantiation.class.getName(),
+  };
+
+  @Param({"plain", "caching", "names"})
+  String set;
+
+  ClassSet toSpecialize;
+  BoundedSpecializer hisp;
+
+  @Setup
+  public void doSetup() {
+    final ClassSet hierarchy = new HierarchyClassSet(Seq.class);
+    final ClassLoader clref = hierarchy.classLoader();
+    final String pkg = Seq.class.getPackageName() + ".";
+    toSpecialize = set.equals("caching") ? new CachingClassSet(hierarchy)
+      : set.equals("names") ? ClassSet.difference(
+        new NameClassSet(clref, pkg + "*"),
+        new NameClassSet(clref, pkg + "Seq", pkg + "ScaledIntSeq"))
+      : hierarchy;
+    hisp = new BoundedSpecializer(toSpecialize);
+  }
+
+  @Benchmark
+  public int membership() {
+    int n = 0;
+    for (final String name: NAMES) if (toSpecialize.contains(name)) n++;
+    return n;
+  }
+
+  @Benchmark
+  public Class<?> specializations(Batch batch, Copied copied)
+  throws ClassNotFoundException {
+    Class<?> klass = null;
+    for (int i = 0; i < batch.copies; i++) {
+      klass = hisp.specialized(IntSeq.class);
+    }
+    copied.copied += batch.copies;
+    return klass;
+  }
+
+  /** Specializations per operation of {@code specializations}. */
+  @State(Scope.Benchmark)
+  public static class Batch {
+    @Param({"1", "10", "100"})
+    int copies;
+  }
+
+  /** Copies made, reported by JMH as time per copy. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Copied {
+    public long copied;
+
+    @Setup(Level.Iteration)
+    public void reset() {copied = 0;}
+  }
+}
@@ -0,0 +1,98 @@
+package org.seismotech.laespe;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Metaspace retained per copy with {@link HierarchyClassSet} and with
+ * {@link SuperclassChainClassSet},
+ * on a {@link GeneratedHierarchy} of {@code depth} levels with siblings:
+ * the hierarchy set copies the leaf chain and the siblings it touches,
+ * the chain set only the leaf chain.
+ *
+ * <p>Retained metaspace, heap and classes per copy are measured at setup
+ * and reported at tear down, as in {@link SpecializationCostBenchmark}.
+ * {@code specialization} measures the latency of a specialization,
+ * including the instantiation that initializes the copied classes.
+ */
+@Fork(value = 1)
+@Warmup(iterations = 2, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 2, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ClassSetMetaspaceBenchmark {
+
+  @Param({"hierarchy", "chain"})
+  String set;
+  @Param({"4", "16", "64"})
+  int depth;
+  @Param({"10"})
+  int methods;
+
+  static final int COPIES = 100;
+
+  BoundedSpecializer hisp;
+  Class<?> leaf;
+  long metaspacePerCopy;
+  long heapPerCopy;
+  double classesPerCopy;
+
+  @Setup
+  public void doSetup()
+  throws Exception {
+    final GeneratedHierarchy hierarchy
+      = new GeneratedHierarchy(depth, methods, true);
+    leaf = hierarchy.leaf();
+    final ClassSet toSpecialize;
+    switch (set) {
+    case "hierarchy":
+      toSpecialize
+        = new HierarchyClassSet(hierarchy, GeneratedHierarchy.Work.class);
+      break;
+    case "chain":
+      toSpecialize = new SuperclassChainClassSet(
+        hierarchy, GeneratedHierarchy.Work.class, leaf);
+      break;
+    default:
+      throw new IllegalArgumentException("Unknown class set " + set);
+    }
+    hisp = new BoundedSpecializer(new LoaderEngine(toSpecialize, hierarchy));
+    retainedPerCopy();
+  }
+
+  @TearDown
+  public void doTearDown() {
+    System.out.println("Retained per " + set + " copy: metaspace "
+        + metaspacePerCopy + " bytes, heap " + heapPerCopy + " bytes, "
+        + classesPerCopy + " classes");
+  }
+
+  void retainedPerCopy()
+  throws Exception {
+    final List<GeneratedHierarchy.Work> copies = new ArrayList<>(COPIES);
+    SpecializationCostBenchmark.gc();
+    final long metaspace = SpecializationCostBenchmark.poolUsed("Metaspace");
+    final long heap = SpecializationCostBenchmark.heapUsed();
+    final long classes = hisp.metrics().getClassesCopied();
+    for (int i = 0; i < COPIES; i++) copies.add(specialization());
+    SpecializationCostBenchmark.gc();
+    metaspacePerCopy = (SpecializationCostBenchmark.poolUsed("Metaspace")
+      - metaspace) / COPIES;
+    heapPerCopy = (SpecializationCostBenchmark.heapUsed() - heap) / COPIES;
+    classesPerCopy
+      = (double) (hisp.metrics().getClassesCopied() - classes) / COPIES;
+    Reference.reachabilityFence(copies);
+  }
+
+  @Benchmark
+  public GeneratedHierarchy.Work specialization()
+  throws Exception {
+    return (GeneratedHierarchy.Work)
+      hisp.specialized(leaf).getConstructor().newInstance();
+  }
+}
@@ -0,0 +1,172 @@
+package org.seismotech.laespe;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * A synthetic class hierarchy of a given depth and class size,
+ * loaded by its own class loader.
+ *
+ * <p>Classes {@code Level0}, ..., {@code Level<depth-1>} each extend the
+ * previous one, and {@code Level0} implements {@link Work}.
+ * Each class declares (overriding) {@code methods} methods {@code m<j>};
+ * {@code Level0.work} calls all of them,
+ * as {@code AbsSeq.sum} calls {@code Seq} methods.
+ * The leaf is the only concrete class.
+ *
+ * <p>With {@code siblings}, each non leaf {@code Level<i>} also has a
+ * concrete subclass {@code Sibling<i>},
+ * instantiated once by the static initializer of {@code Level<i>}
+ * into a field {@code static final Work sibling<i>},
+ * and never used by {@code work}.
+ * A specializing loader copies the siblings of the leaf chain when they
+ * belong to its {@link ClassSet}.
+ */
+public class GeneratedHierarchy extends ClassLoader implements BytecodeSource {
+
+  public interface Work {
+    long work(long x);
+  }
+
+  private static final String PKG = "org/seismotech/laespe/generated/";
+
+  private final int depth;
+  private final Map<String,byte[]> classFiles;
+
+  public GeneratedHierarchy(int depth, int methods) {
+    this(depth, methods, false);
+  }
+
+  public GeneratedHierarchy(int depth, int methods, boolean siblings) {
+    super(GeneratedHierarchy.class.getClassLoader());
+    this.depth = depth;
+    this.classFiles = new HashMap<>();
+    for (int i = 0; i < depth; i++) {
+      final boolean sibling = siblings && i < depth - 1;
+      classFiles.put(className(i).replace('/', '.'),
+          level(i, methods, sibling));
+      if (sibling) {
+        classFiles.put(siblingName(i).replace('/', '.'), sibling(i, methods));
+      }
+    }
+  }
+
+  public Class<?> leaf()
+  throws ClassNotFoundException {
+    return loadClass(className(depth - 1).replace('/', '.'));
+  }
+
+  @Override
+  public ByteBuffer bytecode(String classname)
+  throws ClassNotFoundException {
+    final byte[] bytes = classFiles.get(classname);
+    if (bytes == null) throw new ClassNotFoundException(classname);
+    return ByteBuffer.wrap(bytes);
+  }
+
+  @Override
+  protected Class<?> findClass(String name)
+  throws ClassNotFoundException {
+    final byte[] bytes = classFiles.get(name);
+    if (bytes == null) throw new ClassNotFoundException(name);
+    return defineClass(name, bytes, 0, bytes.length);
+  }
+
+  private static String className(int level) {
+    return PKG + "Level" + level;
+  }
+
+  private static String siblingName(int level) {
+    return PKG + "Sibling" + level;
+  }
+
+  private byte[] level(int i, int methods, boolean sibling) {
+    final String name = className(i);
+    final String superName = i == 0 ? "java/lang/Object" : className(i - 1);
+    final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(Opcodes.V11,
+        Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER
+        | (i == depth - 1 ? 0 : Opcodes.ACC_ABSTRACT),
+        name, null, superName,
+        i == 0 ? new String[] {Type.getInternalName(Work.class)} : null);
+    members(cw, superName, i, methods);
+
+    MethodVisitor mv;
+    if (sibling) {
+      final String siblingName = siblingName(i);
+      final String workDesc = Type.getDescriptor(Work.class);
+      cw.visitField(
+        Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL,
+        "sibling" + i, workDesc, null, null).visitEnd();
+      mv = cw.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+      mv.visitCode();
+      mv.visitTypeInsn(Opcodes.NEW, siblingName);
+      mv.visitInsn(Opcodes.DUP);
+      mv.visitMethodInsn(
+        Opcodes.INVOKESPECIAL, siblingName, "<init>", "()V", false);
+      mv.visitFieldInsn(Opcodes.PUTSTATIC, name, "sibling" + i, workDesc);
+      mv.visitInsn(Opcodes.RETURN);
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+    }
+
+    if (i == 0) {
+      mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "work", "(J)J", null, null);
+      mv.visitCode();
+      for (int j = 0; j < methods; j++) {
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitVarInsn(Opcodes.LLOAD, 1);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, name, "m" + j, "(J)J", false);
+        mv.visitVarInsn(Opcodes.LSTORE, 1);
+      }
+      mv.visitVarInsn(Opcodes.LLOAD, 1);
+      mv.visitInsn(Opcodes.LRETURN);
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+    }
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  /** A concrete subclass of {@code Level<i>} overriding its methods. */
+  private byte[] sibling(int i, int methods) {
+    final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(Opcodes.V11, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER,
+        siblingName(i), null, className(i), null);
+    members(cw, className(i), depth + i, methods);
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  /** Constructor and methods {@code m<j>} of a class at {@code level}. */
+  private static void members(
+      ClassWriter cw, String superName, int level, int methods) {
+    MethodVisitor mv = cw.visitMethod(
+      Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(Opcodes.ALOAD, 0);
+    mv.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false);
+    mv.visitInsn(Opcodes.RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    for (int j = 0; j < methods; j++) {
+      mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "m" + j, "(J)J", null, null);
+      mv.visitCode();
+      mv.visitVarInsn(Opcodes.LLOAD, 1);
+      mv.visitLdcInsn((long) (31 * level + j + 1));
+      mv.visitInsn(Opcodes.LMUL);
+      mv.visitLdcInsn((long) j);
+      mv.visitInsn(Opcodes.LADD);
+      mv.visitInsn(Opcodes.LRETURN);
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+    }
+  }
+}
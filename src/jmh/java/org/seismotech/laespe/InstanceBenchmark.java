@@ -154,6 +154,14 @@ public class InstanceBenchmark {
     return instLambda.apply(x);
   }
 
+  /** Cost of requesting again an already created factory. */
+  @Benchmark
+  public Object instFactoryLookup()
+  throws InstantiationRelatedException {
+    return Instantiation.fastFactory(
+      MyObject.class, IntFunction.class, "apply", int.class);
+  }
+
   @Benchmark
   public Object constructorNewInstance()
   throws Exception {
@@ -94,7 +94,6 @@ public class LoopUnrollingBenchmark {
   public void doSetup()
   throws Exception {
     final BoundedSpecializer hisp = new BoundedSpecializer(
-      Instantiation.class,
       StateAction.class, ArrayExecutor.class);
 
     actions = new StateAction[length];
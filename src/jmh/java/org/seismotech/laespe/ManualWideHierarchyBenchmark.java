@@ -30,7 +30,7 @@ public class ManualWideHierarchyBenchmark {
   public void doSetup()
   throws ClassNotFoundException, InstantiationRelatedException {
     final BoundedSpecializer hisp
-      = new BoundedSpecializer(Seq.class, Instantiation.class);
+      = new BoundedSpecializer(Seq.class);
 
     final Class<?> byteSeqClass = hisp.specialized(ByteSeq.class);
     final Class<?> shortSeqClass = hisp.specialized(ShortSeq.class);
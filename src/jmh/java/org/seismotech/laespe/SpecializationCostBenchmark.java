@@ -0,0 +1,179 @@
+package org.seismotech.laespe;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The cost of specialization itself,
+ * on a {@link GeneratedHierarchy} of {@code depth} classes
+ * with {@code methods} methods each:
+ * <ul>
+ * <li>{@code specialization}: latency of one specialization.
+ * <li>{@code bulkSpecialization}: copies per second, creating
+ *   {@value #COPIES} copies at once
+ *   ({@link BoundedSpecializer#specializeAll}).
+ * <li>{@code firstCompiledCall}: time from specialization until the copy
+ *   runs compiled code, approximated as specializing, instantiating and
+ *   calling {@code work} {@value #WARM_CALLS} times,
+ *   beyond the default C2 compilation thresholds.
+ * <li>{@code unloading}: time to unload {@value #COPIES} unreachable
+ *   copies, as the time to collect them.
+ * <li>Metaspace and heap retained per copy,
+ *   measured with {@link MemoryPoolMXBean} at setup and reported at tear
+ *   down.
+ * </ul>
+ */
+@Fork(value = 1)
+@Warmup(iterations = 2, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 2, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class SpecializationCostBenchmark {
+
+  @Param({"loader", "hidden"})
+  String engine;
+  @Param({"1", "4", "16"})
+  int depth;
+  @Param({"1", "10", "100"})
+  int methods;
+
+  static final int COPIES = 100;
+  static final int WARM_CALLS = 20_000;
+
+  BoundedSpecializer hisp;
+  Class<?> leaf;
+  long metaspacePerCopy;
+  long heapPerCopy;
+
+  @Setup
+  public void doSetup()
+  throws Exception {
+    final GeneratedHierarchy hierarchy = new GeneratedHierarchy(depth, methods);
+    final ClassSet toSpecialize
+      = new HierarchyClassSet(hierarchy, GeneratedHierarchy.Work.class);
+    switch (engine) {
+    case "loader":
+      hisp = new BoundedSpecializer(new LoaderEngine(toSpecialize, hierarchy));
+      break;
+    case "hidden":
+      hisp = new BoundedSpecializer(
+        new HiddenClassEngine(toSpecialize, hierarchy));
+      break;
+    default:
+      throw new IllegalArgumentException("Unknown engine " + engine);
+    }
+    leaf = hierarchy.leaf();
+    retainedPerCopy();
+  }
+
+  @TearDown
+  public void doTearDown() {
+    System.out.println("Retained per " + engine + " copy: metaspace "
+        + metaspacePerCopy + " bytes, heap " + heapPerCopy + " bytes");
+  }
+
+  void retainedPerCopy()
+  throws Exception {
+    final List<GeneratedHierarchy.Work> copies = new ArrayList<>(COPIES);
+    gc();
+    final long metaspace = poolUsed("Metaspace");
+    final long heap = heapUsed();
+    for (int i = 0; i < COPIES; i++) copies.add(newWork());
+    gc();
+    metaspacePerCopy = (poolUsed("Metaspace") - metaspace) / COPIES;
+    heapPerCopy = (heapUsed() - heap) / COPIES;
+    Reference.reachabilityFence(copies);
+  }
+
+  GeneratedHierarchy.Work newWork()
+  throws Exception {
+    return (GeneratedHierarchy.Work)
+      hisp.specialized(leaf).getConstructor().newInstance();
+  }
+
+  static void gc() {
+    for (int i = 0; i < 3; i++) System.gc();
+  }
+
+  static long poolUsed(String name) {
+    for (final MemoryPoolMXBean pool:
+             ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getName().equals(name)) return pool.getUsage().getUsed();
+    }
+    return 0;
+  }
+
+  static long heapUsed() {
+    long used = 0;
+    for (final MemoryPoolMXBean pool:
+             ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) used += pool.getUsage().getUsed();
+    }
+    return used;
+  }
+
+  //----------------------------------------------------------------------
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Class<?> specialization()
+  throws ClassNotFoundException {
+    return hisp.specialized(leaf);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(COPIES)
+  public Object bulkSpecialization()
+  throws ClassNotFoundException {
+    return hisp.specializeAll(List.of(leaf), COPIES);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public long firstCompiledCall()
+  throws Exception {
+    final GeneratedHierarchy.Work work = newWork();
+    long x = 1;
+    for (int i = 0; i < WARM_CALLS; i++) x = work.work(x);
+    return x;
+  }
+
+  @State(Scope.Thread)
+  public static class Unloadable {
+    List<Class<?>> copies;
+    WeakReference<Class<?>> last;
+
+    @Setup(Level.Invocation)
+    public void doSetup(SpecializationCostBenchmark bench)
+    throws ClassNotFoundException {
+      copies = new ArrayList<>(COPIES);
+      for (int i = 0; i < COPIES; i++) {
+        copies.add(bench.hisp.specialized(bench.leaf));
+      }
+      last = new WeakReference<>(copies.get(COPIES - 1));
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 2, batchSize = 1)
+  @Measurement(iterations = 10, batchSize = 1)
+  public boolean unloading(Unloadable unloadable) {
+    unloadable.copies = null;
+    for (int i = 0; i < 10 && unloadable.last.get() != null; i++) {
+      System.gc();
+    }
+    return unloadable.last.get() == null;
+  }
+}
@@ -0,0 +1,57 @@
+package org.seismotech.laespe;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cold start cost of getting the specializations of
+ * {@link BulkSpecializationBenchmark#LEAVES},
+ * either creating them at runtime ({@link BoundedSpecializer#specializeAll})
+ * or loading the ones pregenerated at build time
+ * ({@link PregeneratedSpecializations}),
+ * as declared in {@code src/jmh/laespe/specializations.properties}.
+ *
+ * <p>Each measurement is the first one in a fresh JVM.
+ * To measure pregenerated copies with AppCDS, dump an archive running
+ * the benchmark jar with {@code -XX:ArchiveClassesAtExit=app.jsa}
+ * and pass {@code -XX:SharedArchiveFile=app.jsa} with {@code -jvmArgs}.
+ */
+@Fork(value = 10)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+  static final int COPIES = 100;
+
+  @Benchmark
+  public Map<Class<?>,List<Class<?>>> runtime()
+  throws ClassNotFoundException {
+    return new BoundedSpecializer(
+      org.seismotech.laespe.example.widehierarchy.Seq.class)
+      .specializeAll(BulkSpecializationBenchmark.LEAVES, COPIES);
+  }
+
+  @Benchmark
+  public List<Class<?>> pregenerated()
+  throws ClassNotFoundException, IOException {
+    final PregeneratedSpecializations pregen = new PregeneratedSpecializations(
+      StartupBenchmark.class.getClassLoader());
+    final List<Class<?>> specs = new ArrayList<>();
+    for (final Class<?> leaf: BulkSpecializationBenchmark.LEAVES) {
+      specs.addAll(pregen.specializations(leaf));
+    }
+    if (specs.size() != COPIES * BulkSpecializationBenchmark.LEAVES.size()) {
+      throw new IllegalStateException("Missing pregenerated specializations;"
+          + " see task pregenerateSpecializations");
+    }
+    return specs;
+  }
+}
@@ -0,0 +1,84 @@
+package org.seismotech.laespe;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.seismotech.laespe.LoopUnrollingBenchmark.Incr;
+import org.seismotech.laespe.LoopUnrollingBenchmark.StateAction;
+
+/**
+ * {@link UnrolledChain} against a plain loop,
+ * for chains from 1 to 10000 actions.
+ *
+ * <p>Actions are instances of {@code poly} specializations of
+ * {@link Incr}, assigned in round-robin order,
+ * so that the loop call site is megamorphic when {@code poly > 2}.
+ * {@code rebuild} measures the latency of rebuilding an executor
+ * for the same action classes, where all link classes are reused.
+ *
+ * <p>Every link is a method of its own that must be compiled separately,
+ * so long chains need a much longer warm up than the loop;
+ * hence the longer warm up of this benchmark.
+ */
+@Fork(value = 1)
+@Warmup(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 2, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class UnrolledChainBenchmark {
+
+  @Param({"1", "10", "100", "1000", "10000"})
+  int length;
+  @Param({"8"})
+  int poly;
+  @Param({"8"})
+  int segmentLength;
+
+  StateAction[] actions;
+  UnrolledChain<StateAction> chain;
+  StateAction unrolled;
+
+  @Setup
+  public void doSetup()
+  throws Exception {
+    final BoundedSpecializer hisp = new BoundedSpecializer(StateAction.class);
+    final StateAction[] kinds = new StateAction[poly];
+    for (int i = 0; i < poly; i++) {
+      kinds[i] = (StateAction) hisp
+        .specialized(Incr.class)
+        .getConstructor()
+        .newInstance();
+    }
+    actions = new StateAction[length];
+    for (int i = 0; i < length; i++) actions[i] = kinds[i % poly];
+
+    chain = new UnrolledChain<>(StateAction.class, segmentLength);
+    unrolled = chain.executor(List.of(actions));
+  }
+
+  //----------------------------------------------------------------------
+  @Benchmark
+  public int loopExecution() {
+    final LoopUnrollingBenchmark.State state
+      = new LoopUnrollingBenchmark.State();
+    for (final StateAction action: actions) action.perform(state);
+    return state.counter;
+  }
+
+  @Benchmark
+  public int unrolledExecution() {
+    final LoopUnrollingBenchmark.State state
+      = new LoopUnrollingBenchmark.State();
+    unrolled.perform(state);
+    return state.counter;
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public StateAction rebuild()
+  throws InstantiationRelatedException {
+    return chain.executor(List.of(actions));
+  }
+}
@@ -0,0 +1,190 @@
+package org.seismotech.laespe;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Factories that start creating instances of the original (shared) classes
+ * and switch to specialized classes only when it pays off.
+ *
+ * <p>A family of factories feeds instances to some polymorphic entry point,
+ * as the {@code Seq::sum} call in
+ * {@link org.seismotech.laespe.AutoWideHierarchyBenchmark}.
+ * Specialization only helps when that entry point becomes megamorphic;
+ * on HotSpot, 1 or 2 receiver types are handled as well without it.
+ * So the family watches the classes it instantiates:
+ * the first call to each factory registers its class,
+ * and once {@code threshold} different classes have been seen,
+ * each managed class is specialized with the {@link BoundedSpecializer}
+ * and all the factories are switched to the specialized classes.
+ * Until then, no specialization is created at all.
+ *
+ * <p>Each factory invokes the constructor through a {@link MutableCallSite},
+ * so that the switch affects factories already handed out.
+ * The watching code is removed from the call site after the first call;
+ * the steady state cost of a factory is the cost of a lambda invoking an
+ * exact method handle (see
+ * {@link org.seismotech.laespe.InstanceBenchmark#dynMetaLambda}).
+ * Instances created before the switch remain instances of the original
+ * classes.
+ *
+ * <p>If specialization fails, factories keep creating shared instances;
+ * the error is available in {@link #failure()}.
+ */
+public class AdaptiveFactories<F> {
+
+  private static final MethodHandle OBSERVE;
+  static {
+    try {
+      OBSERVE = MethodHandles.lookup().findVirtual(AdaptiveFactories.class,
+          "observe", methodType(void.class, Managed.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final BoundedSpecializer specializer;
+  private final Class<? super F> factClass;
+  private final String factMethodName;
+  private final int threshold;
+  private final List<Managed> managed;
+  private final Set<Class<?>> seen;
+  private final Map<Class<?>,Class<?>> specs;
+  private volatile boolean specialized;
+  private volatile Throwable failure;
+
+  /**
+   * Factories implementing method {@code factMethodName} of functional
+   * interface {@code factClass}
+   * (as in {@link Instantiation#fastFactory}),
+   * switching to specialized classes once {@code threshold} different
+   * classes have been instantiated.
+   * {@code factClass} must be visible from this library.
+   */
+  public AdaptiveFactories(BoundedSpecializer specializer,
+      Class<? super F> factClass, String factMethodName, int threshold) {
+    this.specializer = specializer;
+    this.factClass = factClass;
+    this.factMethodName = factMethodName;
+    this.threshold = threshold;
+    this.managed = new ArrayList<>();
+    this.seen = new HashSet<>();
+    this.specs = new HashMap<>();
+  }
+
+  public boolean isSpecialized() {return specialized;}
+
+  public Throwable failure() {return failure;}
+
+  /**
+   * A factory for {@code klass} using its constructor with arguments
+   * {@code argTypes}.
+   */
+  public synchronized F factory(Class<?> klass, Class<?>... argTypes)
+  throws ClassNotFoundException, InstantiationRelatedException {
+    final Method factMethod = Instantiation.Metafactory
+      .findMethod(factClass, factMethodName, argTypes.length);
+    final MethodType declType = methodType(
+      factMethod.getReturnType(), factMethod.getParameterTypes());
+    final Managed m = new Managed(klass, argTypes, declType);
+    m.shared = constructor(klass, m);
+    final MethodHandle target;
+    if (specialized) {
+      target = constructor(specialization(klass), m);
+    } else {
+      target = MethodHandles.foldArguments(
+        m.shared, OBSERVE.bindTo(this).bindTo(m));
+    }
+    m.site = new MutableCallSite(target);
+    managed.add(m);
+    try {
+      @SuppressWarnings("unchecked")
+      final F fact = (F) Instantiation.Metafactory.invokerMetafactory(
+        MethodHandles.lookup(), factClass, factMethodName, declType)
+        .getTarget().invoke(m.site.dynamicInvoker());
+      return fact;
+    } catch (Throwable e) {
+      throw new InstantiationRelatedException(
+        "While creating an adaptive factory for " + klass.getName()
+        + " implementing interface " + factClass.getName()
+        + ", method " + factMethodName + ": " + e.getMessage(), e);
+    }
+  }
+
+  /** Called on the first invocation of each factory. */
+  private synchronized void observe(Managed m) {
+    if (specialized) return;
+    m.site.setTarget(m.shared);
+    seen.add(m.klass);
+    if (seen.size() >= threshold && failure == null) specializeAll();
+  }
+
+  private void specializeAll() {
+    final MethodHandle[] targets = new MethodHandle[managed.size()];
+    try {
+      for (int i = 0; i < targets.length; i++) {
+        final Managed m = managed.get(i);
+        targets[i] = constructor(specialization(m.klass), m);
+      }
+    } catch (ClassNotFoundException | InstantiationRelatedException e) {
+      failure = e;
+      return;
+    }
+    final MutableCallSite[] sites = new MutableCallSite[targets.length];
+    for (int i = 0; i < targets.length; i++) {
+      sites[i] = managed.get(i).site;
+      sites[i].setTarget(targets[i]);
+    }
+    MutableCallSite.syncAll(sites);
+    specialized = true;
+  }
+
+  private Class<?> specialization(Class<?> klass)
+  throws ClassNotFoundException {
+    Class<?> spec = specs.get(klass);
+    if (spec == null) {
+      spec = specializer.specialized(klass);
+      specs.put(klass, spec);
+    }
+    return spec;
+  }
+
+  private static MethodHandle constructor(Class<?> klass, Managed m)
+  throws InstantiationRelatedException {
+    final MethodType constType = methodType(void.class, m.argTypes);
+    try {
+      return Instantiation.Metafactory.callerLookup(klass)
+        .findConstructor(klass, constType)
+        .asType(m.type);
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new InstantiationRelatedException(
+        "While locating constructor of " + klass.getName()
+        + " with signature " + constType + ": " + e.getMessage(), e);
+    }
+  }
+
+  //----------------------------------------------------------------------
+  private static class Managed {
+    final Class<?> klass;
+    final Class<?>[] argTypes;
+    final MethodType type;
+    MethodHandle shared;
+    MutableCallSite site;
+
+    Managed(Class<?> klass, Class<?>[] argTypes, MethodType type) {
+      this.klass = klass;
+      this.argTypes = argTypes.clone();
+      this.type = type;
+    }
+  }
+}
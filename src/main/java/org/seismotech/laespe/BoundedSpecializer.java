@@ -1,5 +1,18 @@
 package org.seismotech.laespe;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
 /**
  * A specializer for all the classes belonging to a hierarchy.
  * A call to {@link #specialized} with a class belonging to the hierarchy
@@ -15,19 +28,68 @@ package org.seismotech.laespe;
  * or if you want to use a class instance for multiple executions,
  * please cache it instead of requesting each time a new specialization
  * to this class.
+ * {@link SpecializationPool} is a bounded cache of specializations.
+ *
+ * <p>Specializations are produced by a {@link SpecializationEngine}.
+ * By default, a {@link LoaderEngine} loads each specialization with its own
+ * class loader;
+ * all the loaders created by a specializer share a {@link BytecodeCache},
+ * so that each class file is read only once.
+ * Loading the n-th copy of a class only costs its definition.
+ * A {@link HiddenClassEngine} can be used instead to define specializations
+ * as hidden classes.
  */
 public class BoundedSpecializer {
 
   private final ClassSet toSpecialize;
+  private final SpecializationEngine engine;
+  private final SpecializationBudget budget;
+  /** Descriptions of closed specializations not yet unloaded. */
+  private final Set<String> closedAlive;
 
   public BoundedSpecializer(Class<?>... root) {
     this(new HierarchyClassSet(root));
   }
 
   public BoundedSpecializer(ClassSet toSpecialize) {
-    this.toSpecialize = toSpecialize;
+    this(toSpecialize, new ResourceBytecodeSource(toSpecialize.classLoader()));
   }
 
+  /**
+   * A specializer reading class files from {@code code}.
+   * The source is wrapped into a {@link BytecodeCache}
+   * shared by all the loaders of this specializer.
+   */
+  public BoundedSpecializer(ClassSet toSpecialize, BytecodeSource code) {
+    this(new LoaderEngine(toSpecialize, code));
+  }
+
+  public BoundedSpecializer(SpecializationEngine engine) {
+    this(engine, null);
+  }
+
+  /**
+   * A specializer whose specializations are limited by {@code budget}
+   * (see {@link SpecializationBudget}).
+   * When it is exceeded, {@link #specialized} and the methods built on it
+   * return a fallback class instead of a new copy.
+   * Specializations binding constants and group specializations are not
+   * limited, because the original class cannot replace them.
+   */
+  public BoundedSpecializer(
+      SpecializationEngine engine, SpecializationBudget budget) {
+    this.toSpecialize = engine.classSet();
+    this.engine = engine;
+    this.budget = budget;
+    this.closedAlive = ConcurrentHashMap.newKeySet();
+  }
+
+  /**
+   * Counters of the work done by this specializer
+   * (see {@link SpecializationMetrics}).
+   */
+  public SpecializationMetrics metrics() {return engine.metrics();}
+
   public Class<?> specialized(Class<?> klass)
   throws ClassNotFoundException {
     return toSpecialize.contains(klass) ? reload(klass.getName())
@@ -40,9 +102,282 @@ public class BoundedSpecializer {
       : unmanagedClassError(classname);
   }
 
+  /**
+   * A new specialization of {@code klass}, as {@link #specialized},
+   * wrapped in a handle to release it explicitly and to know when it is
+   * unloaded.
+   * With a {@link SpecializationBudget}, the handle may hold the original
+   * class, which is never reported as leaked,
+   * or a copy shared with other handles, which is reported as leaked while
+   * any of them is open.
+   */
+  public Specialization specialization(Class<?> klass)
+  throws ClassNotFoundException {
+    final Class<?> spec = specialized(klass);
+    return new Specialization(spec,
+        spec == klass ? ConcurrentHashMap.newKeySet() : closedAlive);
+  }
+
+  /**
+   * Descriptions of the specializations closed but still loaded,
+   * after forcing garbage collections for up to {@code timeout}.
+   * Each description names the class and its loader.
+   * This is intended for tests, to detect leaked specializations:
+   * <pre>
+   * assertEquals(List.of(), hisp.leakedSpecializations(5, TimeUnit.SECONDS));
+   * </pre>
+   */
+  public List<String> leakedSpecializations(long timeout, TimeUnit unit)
+  throws InterruptedException {
+    final long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (!closedAlive.isEmpty() && System.nanoTime() < deadline) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    final List<String> leaks = new ArrayList<>(closedAlive);
+    leaks.sort(null);
+    return leaks;
+  }
+
+  /**
+   * A specialization of {@code klass} where the instance fields named in
+   * {@code constants} are replaced by {@code static final} constants
+   * with the given values,
+   * so that the compiler folds them in the code of the copy:
+   * loop bounds, strides or mode flags disappear from the compiled code.
+   *
+   * <p>Field names are resolved from {@code klass} up through its
+   * superclasses; the declaring class must belong to the hierarchy.
+   * Values must have the boxed type of the field
+   * (or be a {@code String} for a {@code String} field).
+   * Instances of the copy ignore any value assigned to those fields by
+   * constructors, and all of them share the bound values.
+   *
+   * @throws IllegalArgumentException if a field cannot be bound.
+   * @throws UnsupportedOperationException if the engine of this
+   * specializer is not a {@link ConstantBindingEngine},
+   * as {@link HiddenClassEngine}.
+   */
+  public Class<?> specialized(Class<?> klass, Map<String,Object> constants)
+  throws ClassNotFoundException {
+    if (!toSpecialize.contains(klass)) unmanagedClassError(klass.getName());
+    final SpecializationEvents.Specialization event
+      = new SpecializationEvents.Specialization();
+    event.begin();
+    final Class<?> spec
+      = constantBindingEngine().specialize(klass.getName(), constants);
+    event.completed(klass.getName(), spec);
+    return spec;
+  }
+
+  /**
+   * Creates {@code copies} specializations of {@code klass}
+   * and a fast factory for each one
+   * (see {@link Instantiation#fastFactory} for the meaning of
+   * {@code factClass}, {@code factMethodName} and {@code argTypes}).
+   * Specializations are created in parallel (see {@link #specializeAll}).
+   *
+   * <p>The factory type is inferred from the context, so that there is no
+   * need for unchecked casts:
+   * <pre>
+   * final SpecializedFactories&lt;Function&lt;int[],Seq&gt;&gt; facts
+   *   = hisp.factories(IntSeq.class, 4, Function.class, "apply", int[].class);
+   * </pre>
+   *
+   * @throws IllegalArgumentException if {@code copies} is not positive.
+   */
+  public <F> SpecializedFactories<F> factories(Class<?> klass, int copies,
+      Class<? super F> factClass, String factMethodName, Class<?>... argTypes)
+  throws ClassNotFoundException, InstantiationRelatedException {
+    if (copies <= 0) throw new IllegalArgumentException(
+      "Copies should be positive: " + copies);
+    final List<Class<?>> specs
+      = specializeAll(List.of(klass), copies).get(klass);
+    @SuppressWarnings("unchecked")
+    final F[] facts = (F[]) new Object[copies];
+    for (int i = 0; i < copies; i++) {
+      @SuppressWarnings("unchecked")
+      final F fact = (F) Instantiation.fastFactory(
+        specs.get(i), factClass, factMethodName, argTypes);
+      facts[i] = fact;
+    }
+    return new SpecializedFactories<>(facts);
+  }
+
+  /**
+   * Specializes all the classes in {@code members} together:
+   * they share the same copy of any other class of the hierarchy they
+   * depend on, as if they were loaded by the same specializing loader
+   * (which they are, with a {@link LoaderEngine}).
+   * Cooperating classes, as a collection and its iterator, or leaf classes
+   * sharing a helper base class,
+   * can then be specialized for each other at the cost of one loader.
+   *
+   * @return The specializations of {@code members}, in the same order.
+   * @throws UnsupportedOperationException if the engine of this
+   * specializer is not a {@link GroupingEngine},
+   * as {@link HiddenClassEngine}.
+   */
+  public Class<?>[] specializedGroup(Class<?>... members)
+  throws ClassNotFoundException {
+    final String[] classnames = new String[members.length];
+    for (int i = 0; i < members.length; i++) {
+      if (!toSpecialize.contains(members[i])) {
+        unmanagedClassError(members[i].getName());
+      }
+      classnames[i] = members[i].getName();
+    }
+    final SpecializationEvents.Specialization event
+      = new SpecializationEvents.Specialization();
+    event.begin();
+    final Class<?>[] specs = groupingEngine().specializeGroup(classnames);
+    if (specs.length > 0) {
+      event.completed(String.join(",", classnames), specs[0]);
+    }
+    return specs;
+  }
+
+  /**
+   * Starts a group of specializations sharing their copies,
+   * as {@link #specializedGroup}, but to be filled incrementally.
+   *
+   * @throws UnsupportedOperationException if the engine of this
+   * specializer is not a {@link GroupingEngine}.
+   */
+  public GroupingEngine.Group newGroup() {
+    final GroupingEngine.Group group = groupingEngine().newGroup();
+    return classname -> {
+      if (!toSpecialize.contains(classname)) unmanagedClassError(classname);
+      final SpecializationEvents.Specialization event
+        = new SpecializationEvents.Specialization();
+      event.begin();
+      final Class<?> spec = group.specialize(classname);
+      event.completed(classname, spec);
+      return spec;
+    };
+  }
+
+  /**
+   * Creates {@code copies} specializations of each class in
+   * {@code classes}, in parallel on the common fork-join pool.
+   * @see #specializeAll(Collection, int, Executor)
+   */
+  public Map<Class<?>,List<Class<?>>> specializeAll(
+      Collection<Class<?>> classes, int copies)
+  throws ClassNotFoundException {
+    return specializeAll(classes, copies, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates {@code copies} specializations of each class in
+   * {@code classes}, running them on {@code executor}.
+   * Each specialization is read, defined and linked as an independent
+   * task, so that boot time specialization scales with the number of cores.
+   * Specializations are linked (and so verified) in the executor,
+   * instead of on first use,
+   * but they are not initialized:
+   * static initializers still run on first use, as for any class.
+   * A failure of any task (for instance, a {@link VerifyError})
+   * is rethrown as is.
+   *
+   * @return The specializations of each class, in request order.
+   * @throws IllegalArgumentException if {@code copies} is negative.
+   */
+  public Map<Class<?>,List<Class<?>>> specializeAll(
+      Collection<Class<?>> classes, int copies, Executor executor)
+  throws ClassNotFoundException {
+    if (copies < 0) throw new IllegalArgumentException(
+      "Copies should not be negative: " + copies);
+    for (final Class<?> klass: classes) {
+      if (!toSpecialize.contains(klass)) unmanagedClassError(klass.getName());
+    }
+    final Map<Class<?>,List<CompletableFuture<Class<?>>>> tasks
+      = new LinkedHashMap<>();
+    for (final Class<?> klass: classes) {
+      final List<CompletableFuture<Class<?>>> klassTasks
+        = new ArrayList<>(copies);
+      for (int i = 0; i < copies; i++) {
+        klassTasks.add(CompletableFuture.supplyAsync(
+            () -> linkedReload(klass.getName()), executor));
+      }
+      tasks.put(klass, klassTasks);
+    }
+    final Map<Class<?>,List<Class<?>>> specs = new LinkedHashMap<>();
+    try {
+      for (final Map.Entry<Class<?>,List<CompletableFuture<Class<?>>>> entry:
+               tasks.entrySet()) {
+        final List<Class<?>> klassSpecs = new ArrayList<>(copies);
+        for (final CompletableFuture<Class<?>> task: entry.getValue()) {
+          klassSpecs.add(task.join());
+        }
+        specs.put(entry.getKey(), klassSpecs);
+      }
+    } catch (CompletionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof ClassNotFoundException) {
+        throw (ClassNotFoundException) cause;
+      }
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw e;
+    }
+    return specs;
+  }
+
+  /**
+   * {@link #reload} linking the specialization.
+   * Reflecting on the declared methods of a class requires the JVM to link
+   * it, but not to initialize it.
+   * The time taken is reported as link time in the metrics.
+   */
+  private Class<?> linkedReload(String classname) {
+    final Class<?> klass;
+    try {
+      klass = reload(classname);
+    } catch (ClassNotFoundException e) {
+      throw new CompletionException(e);
+    }
+    final long start = System.nanoTime();
+    klass.getDeclaredMethods();
+    engine.metrics().classLinked(System.nanoTime() - start);
+    return klass;
+  }
+
   private Class<?> reload(String classname)
   throws ClassNotFoundException {
-    return new SpecializingClassLoader(toSpecialize).loadClass(classname);
+    if (budget != null) {
+      final Class<?> fallback
+        = budget.reserve(classname, toSpecialize.classLoader());
+      if (fallback != null) return fallback;
+    }
+    final SpecializationEvents.Specialization event
+      = new SpecializationEvents.Specialization();
+    event.begin();
+    Class<?> spec = null;
+    try {
+      spec = engine.specialize(classname);
+    } finally {
+      if (budget != null) {
+        if (spec == null) budget.cancel();
+        else budget.admitted(classname, toSpecialize.classLoader(), spec);
+      }
+    }
+    event.completed(classname, spec);
+    return spec;
+  }
+
+  private GroupingEngine groupingEngine() {
+    if (engine instanceof GroupingEngine) return (GroupingEngine) engine;
+    throw new UnsupportedOperationException(
+      engine.getClass().getName() + " doesn't support group specialization");
+  }
+
+  private ConstantBindingEngine constantBindingEngine() {
+    if (engine instanceof ConstantBindingEngine) {
+      return (ConstantBindingEngine) engine;
+    }
+    throw new UnsupportedOperationException(
+      engine.getClass().getName() + " doesn't support constant binding");
   }
 
   private <T> T unmanagedClassError(String classname)
@@ -0,0 +1,50 @@
+package org.seismotech.laespe;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link BytecodeSource} remembering every class file served by another
+ * source.
+ * It is intended to be shared by all the loaders of a specializer,
+ * so that each class file is read only once,
+ * no matter how many copies of the class are loaded.
+ *
+ * <p>Class files are kept in read-only direct buffers.
+ * Heap class files are copied once into a direct buffer;
+ * after that, defining a copy of a class doesn't need any intermediate array.
+ *
+ * <p>Class files are never evicted;
+ * the cache lives as long as the specializer owning it.
+ * Failed requests are not cached.
+ */
+public class BytecodeCache implements BytecodeSource {
+
+  private final BytecodeSource source;
+  private final ConcurrentMap<String,ByteBuffer> cache;
+
+  public BytecodeCache(BytecodeSource source) {
+    this.source = source;
+    this.cache = new ConcurrentHashMap<>();
+  }
+
+  @Override
+  public ByteBuffer bytecode(String classname)
+  throws ClassNotFoundException {
+    ByteBuffer code = cache.get(classname);
+    if (code == null) {
+      final ByteBuffer fresh = immutable(source.bytecode(classname));
+      code = cache.putIfAbsent(classname, fresh);
+      if (code == null) code = fresh;
+    }
+    return code.duplicate();
+  }
+
+  private static ByteBuffer immutable(ByteBuffer code) {
+    if (code.isDirect()) return code.asReadOnlyBuffer();
+    final ByteBuffer copy = ByteBuffer.allocateDirect(code.remaining());
+    copy.put(code).flip();
+    return copy.asReadOnlyBuffer();
+  }
+}
@@ -0,0 +1,107 @@
+package org.seismotech.laespe;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.objectweb.asm.ClassReader;
+
+/**
+ * Represents a hierarchy starting from a set of roots,
+ * as {@link HierarchyClassSet}, but deciding membership of class names from
+ * their class files.
+ * Contains all strict subtypes of the roots.
+ *
+ * <p>{@link #contains(String)} never loads a class:
+ * only the headers (super class and interfaces) of class files are read,
+ * by default from the resources of the reference class loader.
+ * Each class file is read at most once;
+ * answers are kept in a concurrent index,
+ * so that repeated questions are hash lookups.
+ * A class whose class file cannot be found doesn't belong to the set.
+ */
+public class BytecodeHierarchyClassSet implements ClassSet {
+
+  private final ClassLoader clref;
+  private final Class<?>[] roots;
+  private final Set<String> rootNames;
+  private final BytecodeSource code;
+  private final ConcurrentMap<String,Boolean> index;
+
+  public BytecodeHierarchyClassSet(Class<?>... roots) {
+    this((ClassLoader) null, roots);
+  }
+
+  public BytecodeHierarchyClassSet(ClassLoader clref, Class<?>... roots) {
+    this(clref, null, roots);
+  }
+
+  /**
+   * A hierarchy reading class files from {@code code}
+   * or from the resources of {@code clref} if {@code code} is null.
+   */
+  public BytecodeHierarchyClassSet(
+      ClassLoader clref, BytecodeSource code, Class<?>... roots) {
+    this.clref = clref != null ? clref : roots[0].getClassLoader();
+    this.roots = roots.clone();
+    this.rootNames = new HashSet<>();
+    for (final Class<?> root: roots) rootNames.add(root.getName());
+    this.code = code != null ? code : new ResourceBytecodeSource(this.clref);
+    this.index = new ConcurrentHashMap<>();
+  }
+
+  @Override
+  public ClassLoader classLoader() {return clref;}
+
+  @Override
+  public int cost() {return BYTECODE_COST;}
+
+  @Override
+  public boolean contains(Class<?> klass) {
+    for (final Class<?> root: roots) {
+      if (root != klass && root.isAssignableFrom(klass)) return true;
+    }
+    return false;
+  }
+
+  @Override
+  public boolean contains(String classname) {
+    final Boolean known = index.get(classname);
+    return known != null ? known : subtype(classname);
+  }
+
+  private boolean subtype(String classname) {
+    final Boolean known = index.get(classname);
+    if (known != null) return known;
+    boolean subtype = false;
+    final ClassReader header = header(classname);
+    if (header != null) {
+      final String sup = header.getSuperName();
+      subtype = sup != null && supertype(sup.replace('/', '.'));
+      for (final String itf: header.getInterfaces()) {
+        if (subtype) break;
+        subtype = supertype(itf.replace('/', '.'));
+      }
+    }
+    index.put(classname, subtype);
+    return subtype;
+  }
+
+  private boolean supertype(String classname) {
+    return rootNames.contains(classname) || subtype(classname);
+  }
+
+  private ClassReader header(String classname) {
+    final ByteBuffer buffer;
+    try {
+      buffer = code.bytecode(classname);
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+    final byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return new ClassReader(bytes);
+  }
+}
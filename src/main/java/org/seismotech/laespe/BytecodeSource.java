@@ -0,0 +1,31 @@
+package org.seismotech.laespe;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A provider of class files.
+ * {@link SpecializingClassLoader} asks its source for the bytecode of every
+ * class it has to copy.
+ *
+ * <p>The default source ({@link ResourceBytecodeSource}) reads class files
+ * from the resources of a class loader,
+ * but other sources can serve classes kept in memory or generated on the fly,
+ * or map them directly from jar files ({@link ClasspathBytecodeSource}).
+ *
+ * <p>The class file is the content of the returned buffer between its
+ * position and its limit.
+ * Buffers are shared, because sources are free to cache them
+ * (see {@link BytecodeCache});
+ * their content must be considered immutable and never modified.
+ * Each request returns a fresh view, so that the caller can freely consume it.
+ * Direct buffers are preferred, because they are defined by the JVM without
+ * any intermediate copy into the heap.
+ */
+public interface BytecodeSource {
+
+  /**
+   * Returns the class file for class {@code classname}.
+   * @throws ClassNotFoundException if the class file cannot be found or read.
+   */
+  ByteBuffer bytecode(String classname) throws ClassNotFoundException;
+}
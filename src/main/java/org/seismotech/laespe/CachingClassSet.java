@@ -0,0 +1,54 @@
+package org.seismotech.laespe;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link ClassSet} remembering the answers of another class set.
+ * Specializing loaders ask the same questions again for every copy they
+ * create; with this decorator, only the first question is delegated.
+ *
+ * <p>{@link #contains(Class)} answers are kept in a {@link ClassValue},
+ * that doesn't prevent classes from being unloaded.
+ * {@link #contains(String)} answers, positive and negative,
+ * are kept in a concurrent map of names, that doesn't pin any class either.
+ *
+ * <p>The decorated set is expected to be immutable.
+ */
+public class CachingClassSet implements ClassSet {
+
+  private final ClassSet set;
+  private final ClassValue<Boolean> classes;
+  private final ConcurrentMap<String,Boolean> names;
+
+  public CachingClassSet(ClassSet set) {
+    this.set = set;
+    this.classes = new ClassValue<Boolean>() {
+      @Override
+      protected Boolean computeValue(Class<?> klass) {
+        return set.contains(klass);
+      }
+    };
+    this.names = new ConcurrentHashMap<>();
+  }
+
+  @Override
+  public ClassLoader classLoader() {return set.classLoader();}
+
+  @Override
+  public int cost() {return set.cost();}
+
+  @Override
+  public boolean contains(Class<?> klass) {
+    return classes.get(klass);
+  }
+
+  @Override
+  public boolean contains(String classname) {
+    final Boolean known = names.get(classname);
+    if (known != null) return known;
+    final boolean member = set.contains(classname);
+    names.putIfAbsent(classname, member);
+    return member;
+  }
+}
@@ -8,4 +8,44 @@ public interface ClassSet {
   ClassLoader classLoader();
   boolean contains(Class<?> klass);
   boolean contains(String classname);
+
+  /** Cost of deciding from names or from loaded classes alone. */
+  int NAME_COST = 1;
+  /** Cost of deciding from class files. */
+  int BYTECODE_COST = 10;
+  /** Cost of deciding from classes, loading them if needed. */
+  int LOADING_COST = 100;
+
+  /**
+   * Relative cost of a membership question, the worst of
+   * {@link #contains(Class)} and {@link #contains(String)}.
+   * Composite sets ask cheaper sets first.
+   */
+  default int cost() {return LOADING_COST;}
+
+  //----------------------------------------------------------------------
+  /**
+   * Classes in any of {@code sets}.
+   * All the sets should have the same reference class loader.
+   */
+  static ClassSet union(ClassSet... sets) {
+    return new CompositeClassSet(CompositeClassSet.Op.UNION, sets);
+  }
+
+  /**
+   * Classes in all of {@code sets}.
+   * All the sets should have the same reference class loader.
+   */
+  static ClassSet intersection(ClassSet... sets) {
+    return new CompositeClassSet(CompositeClassSet.Op.INTERSECTION, sets);
+  }
+
+  /**
+   * Classes in {@code set} but not in {@code excluded}.
+   * Both sets should have the same reference class loader.
+   */
+  static ClassSet difference(ClassSet set, ClassSet excluded) {
+    return new CompositeClassSet(CompositeClassSet.Op.DIFFERENCE,
+        new ClassSet[] {set, excluded});
+  }
 }
@@ -0,0 +1,120 @@
+package org.seismotech.laespe;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.seismotech.ground.lang.XClass;
+
+/**
+ * A {@link BytecodeSource} reading class files directly from a list of
+ * classpath entries, bypassing class loader resources.
+ *
+ * <p>Each jar entry is indexed once, when the source is created
+ * (see {@link MappedJar}).
+ * Class files are served as mapped, direct buffers,
+ * so that defining a copy never needs an intermediate heap array.
+ * Class files in directories are also mapped.
+ *
+ * <p>An entry can name a jar nested inside another jar, as in fat jars,
+ * with the {@code !/} separator: {@code app.jar!/lib/dep.jar}.
+ * Nested jars must be stored, not deflated (see {@link MappedJar#nested});
+ * a jar holding several nested entries is mapped only once.
+ *
+ * <p>As with a class path, the first entry containing a class wins.
+ * Entries that do not exist are ignored.
+ */
+public class ClasspathBytecodeSource implements BytecodeSource {
+
+  private interface Entry {
+    ByteBuffer find(String resource) throws IOException;
+  }
+
+  private final List<Entry> entries;
+
+  public ClasspathBytecodeSource(List<Path> classpath)
+  throws IOException {
+    this.entries = new ArrayList<>(classpath.size());
+    final Map<String,MappedJar> jars = new HashMap<>();
+    for (final Path path: classpath) {
+      if (Files.isDirectory(path)) {
+        entries.add(resource -> mapFile(path.resolve(resource)));
+      } else {
+        final MappedJar jar = jar(path.toString(), jars);
+        if (jar != null) entries.add(jar::entry);
+      }
+    }
+  }
+
+  /**
+   * A source for the class path of this JVM,
+   * as defined by system property {@code java.class.path}.
+   */
+  public static ClasspathBytecodeSource fromClassPath()
+  throws IOException {
+    final List<Path> classpath = new ArrayList<>();
+    for (final String entry: System.getProperty("java.class.path", "")
+             .split(File.pathSeparator)) {
+      if (!entry.isEmpty()) classpath.add(Paths.get(entry));
+    }
+    return new ClasspathBytecodeSource(classpath);
+  }
+
+  @Override
+  public ByteBuffer bytecode(String classname)
+  throws ClassNotFoundException {
+    final String resource = XClass.classResourceName(classname);
+    try {
+      for (final Entry entry: entries) {
+        final ByteBuffer code = entry.find(resource);
+        if (code != null) return code;
+      }
+    } catch (IOException e) {
+      throw new ClassNotFoundException("Class " + classname
+          + " cannot be read: " + e.getMessage(), e);
+    }
+    throw new ClassNotFoundException(
+      "Class " + classname + " not found in class path");
+  }
+
+  /**
+   * The jar named {@code name}, possibly nested in other jars,
+   * or {@code null} if it doesn't exist.
+   * {@code jars} keeps the jars already mapped, by name.
+   */
+  private static MappedJar jar(String name, Map<String,MappedJar> jars)
+  throws IOException {
+    MappedJar jar = jars.get(name);
+    if (jar != null) return jar;
+    final int sep = name.lastIndexOf("!/");
+    if (sep < 0) {
+      final Path file = Paths.get(name);
+      if (!Files.isRegularFile(file)) return null;
+      jar = new MappedJar(file);
+    } else {
+      final MappedJar outer = jar(name.substring(0, sep), jars);
+      final String entryName = name.substring(sep + 2);
+      if (outer == null || !outer.contains(entryName)) return null;
+      jar = outer.nested(entryName);
+    }
+    jars.put(name, jar);
+    return jar;
+  }
+
+  private static ByteBuffer mapFile(Path file)
+  throws IOException {
+    if (!Files.isRegularFile(file)) return null;
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+    }
+  }
+}
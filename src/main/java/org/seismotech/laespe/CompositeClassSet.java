@@ -0,0 +1,75 @@
+package org.seismotech.laespe;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Union, intersection or difference of class sets
+ * (see {@link ClassSet#union}).
+ *
+ * <p>Operands are asked in order of {@link ClassSet#cost},
+ * and the answer is given as soon as it is known:
+ * a union stops at the first set containing the class,
+ * an intersection at the first set not containing it.
+ * A difference is an intersection with the complement of the excluded set.
+ */
+final class CompositeClassSet implements ClassSet {
+
+  enum Op {UNION, INTERSECTION, DIFFERENCE}
+
+  private final ClassLoader clref;
+  /** Whether the answer is known when an operand answers this. */
+  private final boolean shortCircuit;
+  private final ClassSet[] sets;
+  /** Whether each operand (in {@link #sets} order) is complemented. */
+  private final boolean[] complemented;
+  private final int cost;
+
+  CompositeClassSet(Op op, ClassSet[] sets) {
+    if (sets.length == 0) throw new IllegalArgumentException(
+      "A composite class set needs some class set");
+    this.clref = sets[0].classLoader();
+    for (final ClassSet set: sets) {
+      if (set.classLoader() != clref) throw new IllegalArgumentException(
+        "Class sets with different class loaders: "
+        + clref + " and " + set.classLoader());
+    }
+    this.shortCircuit = op == Op.UNION;
+    final Integer[] order = new Integer[sets.length];
+    for (int i = 0; i < order.length; i++) order[i] = i;
+    Arrays.sort(order, Comparator.comparingInt(i -> sets[i].cost()));
+    this.sets = new ClassSet[sets.length];
+    this.complemented = new boolean[sets.length];
+    int cost = 0;
+    for (int i = 0; i < order.length; i++) {
+      this.sets[i] = sets[order[i]];
+      this.complemented[i] = op == Op.DIFFERENCE && order[i] > 0;
+      cost = Math.max(cost, sets[i].cost());
+    }
+    this.cost = cost;
+  }
+
+  @Override
+  public ClassLoader classLoader() {return clref;}
+
+  @Override
+  public int cost() {return cost;}
+
+  @Override
+  public boolean contains(Class<?> klass) {
+    for (int i = 0; i < sets.length; i++) {
+      final boolean member = sets[i].contains(klass) != complemented[i];
+      if (member == shortCircuit) return shortCircuit;
+    }
+    return !shortCircuit;
+  }
+
+  @Override
+  public boolean contains(String classname) {
+    for (int i = 0; i < sets.length; i++) {
+      final boolean member = sets[i].contains(classname) != complemented[i];
+      if (member == shortCircuit) return shortCircuit;
+    }
+    return !shortCircuit;
+  }
+}
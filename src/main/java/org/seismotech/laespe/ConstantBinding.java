@@ -0,0 +1,206 @@
+package org.seismotech.laespe;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * A {@link BytecodeSource} turning some instance fields into
+ * {@code static final} constants.
+ * See {@link BoundedSpecializer#specialized(Class, Map)}.
+ *
+ * <p>Each constant is named by a field name, resolved as the JVM would,
+ * from the specialized class up through its superclasses.
+ * In the class file of the declaring class,
+ * the field becomes {@code static final} with a {@code ConstantValue};
+ * in every class file served by this source,
+ * reads of the field become {@code getstatic}
+ * and writes are dropped,
+ * so that the value assigned by constructors is ignored.
+ * Only primitive and {@code String} fields can be bound,
+ * to a value of the same (boxed) type,
+ * and only if their declaring class is copied, i.e., belongs to the
+ * {@link ClassSet}.
+ */
+final class ConstantBinding implements BytecodeSource {
+
+  private final BytecodeSource code;
+  private final ClassLoader originals;
+  /** Bound fields by declaring class internal name and field name. */
+  private final Map<String,Map<String,Object>> bound;
+
+  ConstantBinding(BytecodeSource code, ClassSet toSpecialize,
+      Class<?> klass, Map<String,Object> constants) {
+    this.code = code;
+    this.originals = klass.getClassLoader();
+    this.bound = new HashMap<>();
+    for (final Map.Entry<String,Object> constant: constants.entrySet()) {
+      final Field field = field(klass, constant.getKey());
+      if (!toSpecialize.contains(field.getDeclaringClass()))
+        throw new IllegalArgumentException(
+          "Cannot bind field " + field + ": class `"
+          + field.getDeclaringClass().getName()
+          + "` is not copied, as it doesn't belong to the class set");
+      bound.computeIfAbsent(Type.getInternalName(field.getDeclaringClass()),
+          k -> new HashMap<>())
+        .put(field.getName(), constantValue(field, constant.getValue()));
+    }
+  }
+
+  @Override
+  public ByteBuffer bytecode(String classname)
+  throws ClassNotFoundException {
+    final ByteBuffer buffer = code.bytecode(classname);
+    final byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    final ClassReader reader = new ClassReader(bytes);
+    final ClassWriter writer
+      = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+    reader.accept(new Binder(writer), 0);
+    return ByteBuffer.wrap(writer.toByteArray());
+  }
+
+  private static Field field(Class<?> klass, String name) {
+    for (Class<?> c = klass; c != null; c = c.getSuperclass()) {
+      final Field field;
+      try {
+        field = c.getDeclaredField(name);
+      } catch (NoSuchFieldException e) {
+        continue;
+      }
+      if (Modifier.isStatic(field.getModifiers()))
+        throw new IllegalArgumentException(
+          "Field " + field + " is already static");
+      return field;
+    }
+    throw new IllegalArgumentException(
+      "Class `" + klass.getName() + "` has no field `" + name + "`");
+  }
+
+  /** {@code value} as required by a {@code ConstantValue} of {@code field}. */
+  private static Object constantValue(Field field, Object value) {
+    final Class<?> type = field.getType();
+    if (type == String.class && value instanceof String
+        || type == long.class && value instanceof Long
+        || type == float.class && value instanceof Float
+        || type == double.class && value instanceof Double
+        || type == int.class && value instanceof Integer) return value;
+    if (type == short.class && value instanceof Short
+        || type == byte.class && value instanceof Byte) {
+      return ((Number) value).intValue();
+    }
+    if (type == char.class && value instanceof Character) {
+      return (int) (Character) value;
+    }
+    if (type == boolean.class && value instanceof Boolean) {
+      return (Boolean) value ? 1 : 0;
+    }
+    throw new IllegalArgumentException("Cannot bind field " + field
+        + " to " + (value == null ? "null" : value.getClass().getName())
+        + " value " + value);
+  }
+
+  /**
+   * The bound constants of the field {@code owner.name} refers to,
+   * or {@code null} if it is not bound.
+   */
+  private Map<String,Object> boundIn(String owner, String name) {
+    for (String c = owner; c != null; c = superName(c)) {
+      final Map<String,Object> fields = bound.get(c);
+      if (fields != null && fields.containsKey(name)) return fields;
+      if (declares(c, name)) return null;
+    }
+    return null;
+  }
+
+  private String superName(String internalName) {
+    final Class<?> klass = original(internalName);
+    return klass == null || klass.getSuperclass() == null ? null
+      : Type.getInternalName(klass.getSuperclass());
+  }
+
+  private boolean declares(String internalName, String name) {
+    final Class<?> klass = original(internalName);
+    if (klass == null) return false;
+    try {
+      klass.getDeclaredField(name);
+      return true;
+    } catch (NoSuchFieldException e) {
+      return false;
+    }
+  }
+
+  private Class<?> original(String internalName) {
+    try {
+      return Class.forName(
+        internalName.replace('/', '.'), false, originals);
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+  }
+
+  //----------------------------------------------------------------------
+  private class Binder extends ClassVisitor {
+    private Map<String,Object> declared;
+
+    Binder(ClassVisitor next) {
+      super(Opcodes.ASM9, next);
+    }
+
+    @Override
+    public void visit(int version, int access, String name,
+        String signature, String superName, String[] interfaces) {
+      declared = bound.get(name);
+      super.visit(version, access, name, signature, superName, interfaces);
+    }
+
+    @Override
+    public FieldVisitor visitField(int access, String name,
+        String descriptor, String signature, Object value) {
+      if (declared != null && declared.containsKey(name)) {
+        access = access
+          & ~(Opcodes.ACC_VOLATILE | Opcodes.ACC_TRANSIENT)
+          | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL;
+        value = declared.get(name);
+      }
+      return super.visitField(access, name, descriptor, signature, value);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name,
+        String descriptor, String signature, String[] exceptions) {
+      return new MethodVisitor(Opcodes.ASM9, super.visitMethod(
+              access, name, descriptor, signature, exceptions)) {
+        @Override
+        public void visitFieldInsn(
+            int opcode, String owner, String name, String descriptor) {
+          if ((opcode == Opcodes.GETFIELD || opcode == Opcodes.PUTFIELD)
+              && boundIn(owner, name) != null) {
+            if (opcode == Opcodes.GETFIELD) {
+              super.visitInsn(Opcodes.POP);
+              super.visitFieldInsn(
+                Opcodes.GETSTATIC, owner, name, descriptor);
+            } else if (Type.getType(descriptor).getSize() == 2) {
+              super.visitInsn(Opcodes.POP2);
+              super.visitInsn(Opcodes.POP);
+            } else {
+              super.visitInsn(Opcodes.POP2);
+            }
+            return;
+          }
+          super.visitFieldInsn(opcode, owner, name, descriptor);
+        }
+      };
+    }
+  }
+}
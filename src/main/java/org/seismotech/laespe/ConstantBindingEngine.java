@@ -0,0 +1,19 @@
+package org.seismotech.laespe;
+
+import java.util.Map;
+
+/**
+ * A {@link SpecializationEngine} able to bind instance fields to constants
+ * in a specialization
+ * (see {@link BoundedSpecializer#specialized(Class, Map)}).
+ */
+public interface ConstantBindingEngine extends SpecializationEngine {
+
+  /**
+   * Returns a new specialized copy of class {@code classname}
+   * where the instance fields named in {@code constants} become
+   * {@code static final} constants.
+   */
+  Class<?> specialize(String classname, Map<String,Object> constants)
+  throws ClassNotFoundException;
+}
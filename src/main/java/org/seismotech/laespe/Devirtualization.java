@@ -0,0 +1,261 @@
+package org.seismotech.laespe;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * A {@link BytecodeSource} binding the calls of the copied ancestors of a
+ * leaf class to the implementation of that leaf.
+ * See {@link LoaderEngine#devirtualizing}.
+ *
+ * <p>In the copies of the superclasses of the leaf that belong to the
+ * {@link ClassSet},
+ * each {@code invokevirtual} or {@code invokeinterface} whose owner is a
+ * supertype of the leaf, and whose method the leaf implements,
+ * is replaced by an {@code invokestatic} of a bridge added to the leaf:
+ * <pre>
+ * public static R laespe$m$N(Owner self, args) {
+ *   if (self instanceof Leaf) return ((Leaf) self).m(args);
+ *   return self.m(args);
+ * }
+ * </pre>
+ * The call in the guarded branch has a single target as long as no
+ * subclass of the leaf is loaded,
+ * so the JIT binds it by class hierarchy analysis, without profiles.
+ * The copy of the leaf is not made {@code final}:
+ * the {@link ClassSet} may contain subclasses of the leaf,
+ * and copying one of them must not fail.
+ * If one is loaded, the guarded call just dispatches virtually again.
+ * The guard keeps receivers other than the leaf correct.
+ *
+ * <p>Default methods of interfaces are not rewritten.
+ */
+final class Devirtualization implements BytecodeSource {
+
+  private final BytecodeSource code;
+  private final String leaf;
+  private final Set<String> ancestors;
+  private final Map<String,Site> sites;
+
+  Devirtualization(BytecodeSource code, ClassSet toSpecialize, Class<?> leaf)
+  throws ClassNotFoundException {
+    this.code = code;
+    this.leaf = Type.getInternalName(leaf);
+    this.ancestors = new HashSet<>();
+    this.sites = new LinkedHashMap<>();
+    final Set<String> supertypes = new HashSet<>();
+    supertypes(leaf, supertypes);
+    for (Class<?> anc = leaf.getSuperclass();
+         anc != null && toSpecialize.contains(anc);
+         anc = anc.getSuperclass()) {
+      ancestors.add(Type.getInternalName(anc));
+      collectSites(anc.getName(), leaf, supertypes);
+    }
+  }
+
+  @Override
+  public ByteBuffer bytecode(String classname)
+  throws ClassNotFoundException {
+    final String name = classname.replace('.', '/');
+    final boolean isLeaf = name.equals(leaf);
+    if (!isLeaf && (sites.isEmpty() || !ancestors.contains(name))) {
+      return code.bytecode(classname);
+    }
+    final ClassReader reader = new ClassReader(bytes(classname));
+    final ClassWriter writer
+      = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+    reader.accept(isLeaf ? new LeafWriter(writer) : new Rebinder(writer), 0);
+    return ByteBuffer.wrap(writer.toByteArray());
+  }
+
+  private byte[] bytes(String classname)
+  throws ClassNotFoundException {
+    final ByteBuffer buffer = code.bytecode(classname);
+    final byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  private static void supertypes(Class<?> klass, Set<String> supertypes) {
+    if (klass == null || !supertypes.add(Type.getInternalName(klass))) return;
+    supertypes(klass.getSuperclass(), supertypes);
+    for (final Class<?> itf: klass.getInterfaces()) supertypes(itf, supertypes);
+  }
+
+  private void collectSites(
+      String classname, Class<?> leafClass, Set<String> supertypes)
+  throws ClassNotFoundException {
+    new ClassReader(bytes(classname)).accept(new ClassVisitor(Opcodes.ASM9) {
+      @Override
+      public MethodVisitor visitMethod(int access, String name,
+          String descriptor, String signature, String[] exceptions) {
+        return new MethodVisitor(Opcodes.ASM9) {
+          @Override
+          public void visitMethodInsn(int opcode, String owner, String name,
+              String descriptor, boolean isInterface) {
+            if ((opcode == Opcodes.INVOKEVIRTUAL
+                 || opcode == Opcodes.INVOKEINTERFACE)
+                && supertypes.contains(owner)
+                && implemented(leafClass, owner, name, descriptor)) {
+              sites.computeIfAbsent(Site.key(opcode, owner, name, descriptor),
+                  k -> new Site(opcode, owner, name, descriptor, isInterface,
+                      sites.size()));
+            }
+          }
+        };
+      }
+    }, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+  }
+
+  /**
+   * Whether {@code klass} has (or inherits from a superclass) a concrete
+   * implementation of method {@code name} with {@code descriptor},
+   * accessible from the bridge through {@code owner}.
+   */
+  private static boolean implemented(
+      Class<?> klass, String owner, String name, String descriptor) {
+    final boolean samePackage
+      = packageOf(owner).equals(packageOf(Type.getInternalName(klass)));
+    for (Class<?> c = klass; c != null; c = c.getSuperclass()) {
+      for (final Method m: c.getDeclaredMethods()) {
+        if (!m.getName().equals(name)
+            || !Type.getMethodDescriptor(m).equals(descriptor)) continue;
+        final int mods = m.getModifiers();
+        return !Modifier.isAbstract(mods) && !Modifier.isStatic(mods)
+          && (Modifier.isPublic(mods)
+              || samePackage && !Modifier.isPrivate(mods));
+      }
+    }
+    return false;
+  }
+
+  private static String packageOf(String internalName) {
+    final int slash = internalName.lastIndexOf('/');
+    return slash < 0 ? "" : internalName.substring(0, slash);
+  }
+
+  //----------------------------------------------------------------------
+  private static class Site {
+    final int opcode;
+    final String owner;
+    final String name;
+    final String descriptor;
+    final boolean isInterface;
+    final String bridgeName;
+    final String bridgeDescriptor;
+
+    Site(int opcode, String owner, String name, String descriptor,
+        boolean isInterface, int index) {
+      this.opcode = opcode;
+      this.owner = owner;
+      this.name = name;
+      this.descriptor = descriptor;
+      this.isInterface = isInterface;
+      this.bridgeName = "laespe$" + name + "$" + index;
+      this.bridgeDescriptor = "(L" + owner + ";" + descriptor.substring(1);
+    }
+
+    static String key(
+        int opcode, String owner, String name, String descriptor) {
+      return opcode + " " + owner + "." + name + descriptor;
+    }
+  }
+
+  /** Replaces rewritable calls of an ancestor by calls to the bridges. */
+  private class Rebinder extends ClassVisitor {
+    Rebinder(ClassVisitor next) {
+      super(Opcodes.ASM9, next);
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name,
+        String descriptor, String signature, String[] exceptions) {
+      return new MethodVisitor(Opcodes.ASM9, super.visitMethod(
+              access, name, descriptor, signature, exceptions)) {
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name,
+            String descriptor, boolean isInterface) {
+          final Site site
+            = sites.get(Site.key(opcode, owner, name, descriptor));
+          if (site == null) {
+            super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+          } else {
+            super.visitMethodInsn(Opcodes.INVOKESTATIC,
+                leaf, site.bridgeName, site.bridgeDescriptor, false);
+          }
+        }
+      };
+    }
+  }
+
+  /** Adds the bridges to the leaf. */
+  private class LeafWriter extends ClassVisitor {
+    private boolean frames;
+
+    LeafWriter(ClassVisitor next) {
+      super(Opcodes.ASM9, next);
+    }
+
+    @Override
+    public void visit(int version, int access, String name,
+        String signature, String superName, String[] interfaces) {
+      frames = (version & 0xFFFF) >= Opcodes.V1_6;
+      super.visit(version, access, name, signature, superName, interfaces);
+    }
+
+    @Override
+    public void visitEnd() {
+      for (final Site site: sites.values()) bridge(site);
+      super.visitEnd();
+    }
+
+    private void bridge(Site site) {
+      final MethodVisitor mv = super.visitMethod(
+        Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC,
+        site.bridgeName, site.bridgeDescriptor, null, null);
+      final Type[] args = Type.getArgumentTypes(site.descriptor);
+      final Type ret = Type.getReturnType(site.descriptor);
+      final Label fallback = new Label();
+      mv.visitCode();
+      mv.visitVarInsn(Opcodes.ALOAD, 0);
+      mv.visitTypeInsn(Opcodes.INSTANCEOF, leaf);
+      mv.visitJumpInsn(Opcodes.IFEQ, fallback);
+      mv.visitVarInsn(Opcodes.ALOAD, 0);
+      mv.visitTypeInsn(Opcodes.CHECKCAST, leaf);
+      loadArgs(mv, args);
+      mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL,
+          leaf, site.name, site.descriptor, false);
+      mv.visitInsn(ret.getOpcode(Opcodes.IRETURN));
+      mv.visitLabel(fallback);
+      if (frames) mv.visitFrame(Opcodes.F_SAME, 0, null, 0, null);
+      mv.visitVarInsn(Opcodes.ALOAD, 0);
+      loadArgs(mv, args);
+      mv.visitMethodInsn(site.opcode,
+          site.owner, site.name, site.descriptor, site.isInterface);
+      mv.visitInsn(ret.getOpcode(Opcodes.IRETURN));
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+    }
+
+    private void loadArgs(MethodVisitor mv, Type[] args) {
+      int slot = 1;
+      for (final Type arg: args) {
+        mv.visitVarInsn(arg.getOpcode(Opcodes.ILOAD), slot);
+        slot += arg.getSize();
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package org.seismotech.laespe;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Memoization of {@link Instantiation#fastFactory}.
+ *
+ * <p>The factories created for each class are kept in a {@link ClassValue},
+ * so that they don't prevent classes from being unloaded.
+ *
+ * <p>This class is not a subtype of {@link Instantiation} on purpose:
+ * it must not be copied by specializers having {@link Instantiation} as a
+ * root.
+ */
+final class FactoryCache {
+
+  private FactoryCache() {}
+
+  /**
+   * A single metafactory is enough for any class,
+   * because it spins factories with a private lookup in the target class.
+   */
+  private static final Instantiation METAFACTORY
+    = new Instantiation.Metafactory();
+
+  /** Factories already created for each class. */
+  private static final ClassValue<ConcurrentMap<Key,Object>> FACTORIES
+    = new ClassValue<ConcurrentMap<Key,Object>>() {
+    @Override
+    protected ConcurrentMap<Key,Object> computeValue(Class<?> klass) {
+      return new ConcurrentHashMap<>();
+    }
+  };
+
+  static <T> T factory(Class<?> objClass,
+      Class<T> factClass, String factMethodName, Class<?>... argTypes)
+  throws InstantiationRelatedException {
+    final ConcurrentMap<Key,Object> facts = FACTORIES.get(objClass);
+    final Key key = new Key(factClass, factMethodName, argTypes);
+    Object fact = facts.get(key);
+    if (fact == null) {
+      final Object fresh = METAFACTORY
+        .factory(objClass, factClass, factMethodName, argTypes);
+      fact = facts.putIfAbsent(key.frozen(), fresh);
+      if (fact == null) fact = fresh;
+    }
+    return factClass.cast(fact);
+  }
+
+  //----------------------------------------------------------------------
+  private static class Key {
+    final Class<?> factClass;
+    final String factMethodName;
+    final Class<?>[] argTypes;
+
+    Key(Class<?> factClass, String factMethodName, Class<?>[] argTypes) {
+      this.factClass = factClass;
+      this.factMethodName = factMethodName;
+      this.argTypes = argTypes;
+    }
+
+    /** A copy safe from later modifications of the argument types. */
+    Key frozen() {
+      return new Key(factClass, factMethodName, argTypes.clone());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) return false;
+      final Key that = (Key) other;
+      return factClass == that.factClass
+        && factMethodName.equals(that.factMethodName)
+        && Arrays.equals(argTypes, that.argTypes);
+    }
+
+    @Override
+    public int hashCode() {
+      return (31 * factClass.hashCode() + factMethodName.hashCode()) * 31
+        + Arrays.hashCode(argTypes);
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package org.seismotech.laespe;
+
+/**
+ * A {@link SpecializationEngine} able to specialize several classes
+ * together, sharing the copies of the classes they depend on
+ * (see {@link BoundedSpecializer#specializedGroup}).
+ */
+public interface GroupingEngine extends SpecializationEngine {
+
+  /**
+   * Returns new specialized copies of all the classes in {@code classnames},
+   * sharing the copies of any other class of {@link #classSet()} they
+   * depend on.
+   */
+  default Class<?>[] specializeGroup(String... classnames)
+  throws ClassNotFoundException {
+    final Group group = newGroup();
+    final Class<?>[] classes = new Class<?>[classnames.length];
+    for (int i = 0; i < classnames.length; i++) {
+      classes[i] = group.specialize(classnames[i]);
+    }
+    return classes;
+  }
+
+  /** Starts a new group of specializations sharing their copies. */
+  Group newGroup();
+
+  /**
+   * A set of specializations sharing the copies of the classes they depend
+   * on.
+   * Specializing the same class twice in a group returns the same copy.
+   */
+  interface Group {
+    Class<?> specialize(String classname) throws ClassNotFoundException;
+  }
+}
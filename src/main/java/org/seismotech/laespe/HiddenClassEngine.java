@@ -0,0 +1,250 @@
+package org.seismotech.laespe;
+
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * A {@link SpecializationEngine} defining each specialization as a hidden
+ * class ({@link MethodHandles.Lookup#defineHiddenClass}).
+ * There is no class loader per specialization:
+ * each copy lives in the loader of the original class
+ * and can be unloaded on its own, as soon as it becomes unreachable.
+ *
+ * <p>A hidden class cannot be named by other classes;
+ * in particular, it cannot be the superclass of another class.
+ * Therefore, the superclass chain of the requested class cannot be copied
+ * as in {@link LoaderEngine}.
+ * Instead, the methods the requested class inherits from its ancestors
+ * in the {@link ClassSet} are copied down into its hidden copy.
+ * The copy still extends the original ancestors,
+ * but all those inherited methods are replaced by fresh overriding methods,
+ * with their own profile.
+ *
+ * <p>An inherited method is not copied down
+ * (and it remains shared with the original hierarchy)
+ * if it is final, static, private or native,
+ * if it uses {@code invokespecial} ({@code super} calls),
+ * or if it accesses private members of its class or of its nest.
+ * Ancestors in a package other than the package of the requested class
+ * are not copied down either.
+ *
+ * <p>Other classes of the {@link ClassSet} referenced by the specialized
+ * class are not copied: they are the original ones.
+ * The package of the requested class must be open to this library,
+ * which is always the case for the unnamed module.
+ * Hidden copies are defined with a full privilege lookup in that package
+ * (see {@link Instantiation.Metafactory#callerLookup}),
+ * so classes of any class loader can be specialized.
+ * That lookup reuses one provider class per loader and package,
+ * so that specializing defines nothing but the hidden copy.
+ */
+public class HiddenClassEngine implements SpecializationEngine {
+
+  private final ClassSet toSpecialize;
+  private final BytecodeSource code;
+  private final SpecializationMetrics metrics;
+
+  public HiddenClassEngine(ClassSet toSpecialize) {
+    this(toSpecialize, new ResourceBytecodeSource(toSpecialize.classLoader()));
+  }
+
+  public HiddenClassEngine(ClassSet toSpecialize, BytecodeSource code) {
+    this.toSpecialize = toSpecialize;
+    this.metrics = new SpecializationMetrics();
+    this.code = new BytecodeCache(metrics.counting(code));
+  }
+
+  @Override
+  public ClassSet classSet() {return toSpecialize;}
+
+  /** Metrics of this engine; there are no loaders nor class set queries. */
+  @Override
+  public SpecializationMetrics metrics() {return metrics;}
+
+  @Override
+  public Class<?> specialize(String classname)
+  throws ClassNotFoundException {
+    final Class<?> klass = toSpecialize.classLoader().loadClass(classname);
+    final byte[] bytecode = pullDown(klass);
+    try {
+      final MethodHandles.Lookup lookup
+        = Instantiation.Metafactory.callerLookup(klass);
+      final long start = System.nanoTime();
+      final Class<?> copy = lookup.defineHiddenClass(bytecode, true)
+        .lookupClass();
+      metrics.classCopied(System.nanoTime() - start);
+      return copy;
+    } catch (IllegalAccessException | InstantiationRelatedException e) {
+      throw new ClassNotFoundException("Class " + classname
+          + " cannot be defined as a hidden class: " + e.getMessage(), e);
+    }
+  }
+
+  private byte[] pullDown(Class<?> klass)
+  throws ClassNotFoundException {
+    final ClassReader leaf = new ClassReader(bytes(klass.getName()));
+    final Set<String> declared = new HashSet<>();
+    leaf.accept(new ClassVisitor(Opcodes.ASM9) {
+      @Override
+      public MethodVisitor visitMethod(int access, String name,
+          String descriptor, String signature, String[] exceptions) {
+        declared.add(name + descriptor);
+        return null;
+      }
+    }, ClassReader.SKIP_CODE);
+
+    final List<ClassReader> ancestors = new ArrayList<>();
+    final List<Set<String>> pulled = new ArrayList<>();
+    for (Class<?> anc = klass.getSuperclass();
+         anc != null && toSpecialize.contains(anc)
+           && anc.getPackageName().equals(klass.getPackageName());
+         anc = anc.getSuperclass()) {
+      final ClassReader reader = new ClassReader(bytes(anc.getName()));
+      ancestors.add(reader);
+      pulled.add(portableMethods(reader, declared));
+    }
+
+    final ClassWriter writer = new ClassWriter(leaf, 0);
+    leaf.accept(new ClassVisitor(Opcodes.ASM9, writer) {
+      @Override
+      public void visitEnd() {
+        for (int i = 0; i < ancestors.size(); i++) {
+          copyMethods(ancestors.get(i), pulled.get(i), writer);
+        }
+        super.visitEnd();
+      }
+    }, 0);
+    return writer.toByteArray();
+  }
+
+  private byte[] bytes(String classname)
+  throws ClassNotFoundException {
+    final ByteBuffer buffer = code.bytecode(classname);
+    final byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  private static void copyMethods(
+      ClassReader from, Set<String> methods, ClassVisitor to) {
+    from.accept(new ClassVisitor(Opcodes.ASM9) {
+      @Override
+      public MethodVisitor visitMethod(int access, String name,
+          String descriptor, String signature, String[] exceptions) {
+        return methods.contains(name + descriptor)
+          ? to.visitMethod(access, name, descriptor, signature, exceptions)
+          : null;
+      }
+    }, ClassReader.SKIP_DEBUG);
+  }
+
+  /**
+   * Methods of {@code reader} that can be copied down,
+   * excluding the ones already in {@code declared}.
+   * All the instance methods of {@code reader} are added to
+   * {@code declared}, so that they hide homonymous methods of upper
+   * ancestors, even when they are not portable.
+   */
+  private static Set<String> portableMethods(
+      ClassReader reader, Set<String> declared) {
+    final String owner = reader.getClassName();
+    final Set<String> privates = new HashSet<>();
+    reader.accept(new ClassVisitor(Opcodes.ASM9) {
+      @Override
+      public FieldVisitor visitField(int access, String name,
+          String descriptor, String signature, Object value) {
+        if ((access & Opcodes.ACC_PRIVATE) != 0) privates.add(name);
+        return null;
+      }
+      @Override
+      public MethodVisitor visitMethod(int access, String name,
+          String descriptor, String signature, String[] exceptions) {
+        if ((access & Opcodes.ACC_PRIVATE) != 0) privates.add(name);
+        return null;
+      }
+    }, ClassReader.SKIP_CODE);
+
+    final Set<String> portable = new HashSet<>();
+    reader.accept(new ClassVisitor(Opcodes.ASM9) {
+      @Override
+      public MethodVisitor visitMethod(int access, String name,
+          String descriptor, String signature, String[] exceptions) {
+        final String key = name + descriptor;
+        if ((access & Opcodes.ACC_STATIC) != 0 || name.startsWith("<")
+            || !declared.add(key)) return null;
+        if ((access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_FINAL
+                | Opcodes.ACC_PRIVATE | Opcodes.ACC_NATIVE)) != 0) return null;
+        return new PortabilityCheck(owner, privates) {
+          @Override
+          public void visitEnd() {
+            if (portable()) portable.add(key);
+          }
+        };
+      }
+    }, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    return portable;
+  }
+
+  private static class PortabilityCheck extends MethodVisitor {
+    private final String owner;
+    private final Set<String> privates;
+    private boolean portable;
+
+    PortabilityCheck(String owner, Set<String> privates) {
+      super(Opcodes.ASM9);
+      this.owner = owner;
+      this.privates = privates;
+      this.portable = true;
+    }
+
+    boolean portable() {return portable;}
+
+    private void member(String memberOwner, String name) {
+      if (memberOwner.equals(owner) ? privates.contains(name)
+          : memberOwner.startsWith(owner + "$")) portable = false;
+    }
+
+    private void constant(Object cst) {
+      if (cst instanceof Handle) {
+        final Handle handle = (Handle) cst;
+        member(handle.getOwner(), handle.getName());
+      }
+    }
+
+    @Override
+    public void visitFieldInsn(
+        int opcode, String owner, String name, String descriptor) {
+      member(owner, name);
+    }
+
+    @Override
+    public void visitMethodInsn(int opcode, String owner, String name,
+        String descriptor, boolean isInterface) {
+      if (opcode == Opcodes.INVOKESPECIAL) portable = false;
+      member(owner, name);
+    }
+
+    @Override
+    public void visitInvokeDynamicInsn(String name, String descriptor,
+        Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
+      for (final Object cst: bootstrapMethodArguments) constant(cst);
+    }
+
+    @Override
+    public void visitLdcInsn(Object value) {
+      constant(value);
+    }
+  }
+}
@@ -9,7 +9,17 @@ import java.lang.invoke.CallSite;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.LambdaMetafactory;
+import java.lang.ref.WeakReference;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
 
 /**
  * An utility interface for object instantiation.
@@ -17,22 +27,23 @@ import java.util.Arrays;
 public interface Instantiation {
 
   /**
-   * <p>To use this on a specialized class returned by
-   * {@link HierarchySpecializer},
-   * {@code Instantiation.Metafactory.class} must be added to
-   * the specialized class set
-   * (typically adding {@code Instantiation.class} as a root to a
-   * {@link HierarchyClassSet}).
-   * Otherwise, this factory will search homonymous class in its class loader,
-   * returning a factory for the original class instead of the specialized one.
-   * See {@link BoundedSpecializerTest#wideHierarchyFactoryTest}
-   * for an example avoiding or adding {@code Instantiation.class}.
+   * Returns a factory for {@code objClass}
+   * (see {@link #factory} for the meaning of the arguments).
+   *
+   * <p>It works on specialized classes returned by
+   * {@link BoundedSpecializer}, always creating instances of the given class,
+   * never of an homonymous class.
+   * There is no need to add {@code Instantiation.class} to the specialized
+   * class set.
+   * See {@link BoundedSpecializerTest#wideHierarchyFactoryTest}.
+   *
+   * <p>Factories are memoized (see {@link FactoryCache}):
+   * repeating a request returns the same factory, at the cost of a lookup.
    */
   static <T> T fastFactory(Class<?> objClass,
       Class<T> factClass, String factMethodName, Class<?>... argTypes)
   throws InstantiationRelatedException {
-    return Metafactory.forClass(objClass)
-      .factory(objClass, factClass, factMethodName, argTypes);
+    return FactoryCache.factory(objClass, factClass, factMethodName, argTypes);
   }
 
   //----------------------------------------------------------------------
@@ -91,10 +102,16 @@ public interface Instantiation {
      * See {@link org.seismotech.laespe.InstanceBenchmark} for a benchmark
      * comparing several instantiation alternatives, including this one.
      *
+     * <p>The lambda is spun with a full privilege lookup in the package of
+     * {@code objClass}, so that it is defined in the class loader of
+     * {@code objClass} and its {@code new} resolves to {@code objClass},
+     * even when it is a specialized copy of a class.
+     * See {@link #callerLookup}.
+     * The package of {@code objClass} must be open to this library,
+     * which is always the case for the unnamed module.
+     *
      * @todo Add remaining check:
      * implemented {@code factClass} method accepts {@code argTypes}.
-     * @todo Currently this method doesn't work for classes loaded with
-     * HierarchySpecializer, because it uses the original class
      */
     @Override
     public <T> T factory(Class<?> objClass,
@@ -108,7 +125,7 @@ public interface Instantiation {
       final MethodType callType = methodType(objClass, argTypes);
       //Fails with *Invalid caller*
       //final MethodHandles.Lookup lookup = MethodHandles.lookup().in(objClass);
-      final MethodHandles.Lookup lookup = MethodHandles.lookup();
+      final MethodHandles.Lookup lookup = callerLookup(objClass);
       final MethodHandle constHandle;
       try {
         constHandle = lookup.findConstructor(objClass, constType);
@@ -119,13 +136,15 @@ public interface Instantiation {
       }
       final CallSite csite;
       try {
-        csite = LambdaMetafactory.metafactory(
-          lookup,
-          factMethodName,
-          methodType(factClass),
-          declType,
-          constHandle,
-          callType);
+        csite = objClass.isHidden()
+          ? invokerMetafactory(lookup, factClass, factMethodName, declType)
+          : LambdaMetafactory.metafactory(
+            lookup,
+            factMethodName,
+            methodType(factClass),
+            declType,
+            constHandle,
+            callType);
       } catch (LambdaConversionException e) {
         throw new InstantiationRelatedException(
           "While creating a lambda metafactory for " + objClass.getName()
@@ -135,7 +154,9 @@ public interface Instantiation {
       }
       final Object fact;
       try {
-        fact = csite.getTarget().invoke();
+        fact = objClass.isHidden()
+          ? csite.getTarget().invoke(constHandle.asType(declType))
+          : csite.getTarget().invoke();
       } catch (Throwable e) {
         throw new InstantiationRelatedException(
           "While creating a lambda for " + objClass.getName()
@@ -146,7 +167,129 @@ public interface Instantiation {
       return factClass.cast(fact);
     }
 
-    private static Method findMethod(Class<?> klass, String name, int arity) {
+    /**
+     * A lookup with full privilege access in the package of {@code klass},
+     * as required by LambdaMetafactory.
+     *
+     * <p>A private lookup in {@code klass} is enough when {@code klass}
+     * is in the module of this library.
+     * But specialized copies live in the unnamed module of their specializing
+     * class loader, where a private lookup from this library lacks module
+     * access.
+     * In that case, a tiny package-private class providing its own lookup
+     * is injected in the package of {@code klass}
+     * (which only requires package access).
+     * Providers are remembered by class loader and package,
+     * so that at most one is defined per package;
+     * the providers of a class loader don't prevent it from being unloaded.
+     */
+    static MethodHandles.Lookup callerLookup(Class<?> klass)
+    throws InstantiationRelatedException {
+      final MethodHandle provider;
+      try {
+        final MethodHandles.Lookup lookup
+          = MethodHandles.privateLookupIn(klass, MethodHandles.lookup());
+        if (lookup.hasFullPrivilegeAccess()) return lookup;
+        provider = lookup.findStatic(lookupProvider(lookup, klass), "lookup",
+            methodType(MethodHandles.Lookup.class));
+      } catch (IllegalAccessException | NoSuchMethodException e) {
+        throw new InstantiationRelatedException(
+          "While creating a lookup in the package of " + klass.getName()
+          + ": " + e.getMessage(), e);
+      }
+      try {
+        return (MethodHandles.Lookup) provider.invokeExact();
+      } catch (Throwable e) {
+        throw new InstantiationRelatedException(
+          "While getting a lookup in the package of " + klass.getName()
+          + ": " + e.getMessage(), e);
+      }
+    }
+
+    private static final AtomicInteger PROVIDER_COUNTER = new AtomicInteger();
+
+    /**
+     * Lookup providers by class loader and package name.
+     * A provider is only weakly referenced,
+     * but it lives as long as its class loader.
+     */
+    private static final
+    Map<ClassLoader,Map<String,WeakReference<Class<?>>>> PROVIDERS
+      = new WeakHashMap<>();
+
+    /** The lookup provider of the package of {@code klass}. */
+    private static Class<?> lookupProvider(
+        MethodHandles.Lookup lookup, Class<?> klass)
+    throws IllegalAccessException {
+      final String pkg = klass.getPackageName();
+      synchronized (PROVIDERS) {
+        final Map<String,WeakReference<Class<?>>> packages
+          = PROVIDERS.computeIfAbsent(
+            klass.getClassLoader(), k -> new HashMap<>());
+        final WeakReference<Class<?>> known = packages.get(pkg);
+        Class<?> provider = known == null ? null : known.get();
+        if (provider == null) {
+          provider = lookup.defineClass(lookupProvider(pkg));
+          packages.put(pkg, new WeakReference<>(provider));
+        }
+        return provider;
+      }
+    }
+
+    /**
+     * Class file for a class in package {@code pkg} equivalent to
+     * <pre>
+     * final class LaespeLookup$$N {
+     *   static MethodHandles.Lookup lookup() {
+     *     return MethodHandles.lookup();
+     *   }
+     * }
+     * </pre>
+     */
+    private static byte[] lookupProvider(String pkg) {
+      final String name = (pkg.isEmpty() ? "" : pkg.replace('.', '/') + "/")
+        + "LaespeLookup$$" + PROVIDER_COUNTER.incrementAndGet();
+      final String lookupDesc = Type.getDescriptor(MethodHandles.Lookup.class);
+      final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+      cw.visit(Opcodes.V11,
+          Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC,
+          name, null, "java/lang/Object", null);
+      final MethodVisitor mv = cw.visitMethod(
+        Opcodes.ACC_STATIC, "lookup", "()" + lookupDesc, null, null);
+      mv.visitCode();
+      mv.visitMethodInsn(Opcodes.INVOKESTATIC,
+          Type.getInternalName(MethodHandles.class),
+          "lookup", "()" + lookupDesc, false);
+      mv.visitInsn(Opcodes.ARETURN);
+      mv.visitMaxs(0, 0);
+      mv.visitEnd();
+      cw.visitEnd();
+      return cw.toByteArray();
+    }
+
+    /**
+     * A call site for lambdas capturing a method handle and invoking it
+     * exactly, with the declared type of the implemented method.
+     *
+     * <p>A hidden class cannot be named in the lambda implementation,
+     * so its constructor cannot be invoked with a direct {@code new};
+     * instead, the lambda captures the constructor handle.
+     * See {@link org.seismotech.laespe.InstanceBenchmark#dynMetaLambda}
+     * for the performance of this alternative.
+     */
+    static CallSite invokerMetafactory(MethodHandles.Lookup lookup,
+        Class<?> factClass, String factMethodName, MethodType declType)
+    throws LambdaConversionException {
+      return LambdaMetafactory.metafactory(
+        lookup,
+        factMethodName,
+        methodType(factClass, MethodHandle.class),
+        declType,
+        MethodHandles.exactInvoker(declType),
+        declType);
+    }
+
+    static Method findMethod(Class<?> klass, String name, int arity) {
       Method method = null;
       for (final Method cand: klass.getDeclaredMethods()) {
         if (cand.getParameterCount() != arity
@@ -0,0 +1,93 @@
+package org.seismotech.laespe;
+
+import java.util.Map;
+
+/**
+ * A {@link SpecializationEngine} creating a new
+ * {@link SpecializingClassLoader} for each specialization.
+ * The requested class and all the classes of the {@link ClassSet} it
+ * depends on are copied into that loader.
+ * Copies are unloaded when the whole loader becomes unreachable.
+ * A group of classes can be specialized into one shared loader
+ * ({@link #newGroup}).
+ * Instance fields can be bound to constants in a specialization
+ * (see {@link ConstantBinding}),
+ * and calls in copied ancestors can be devirtualized
+ * (see {@link Devirtualization}).
+ *
+ * <p>All the loaders share a {@link BytecodeCache},
+ * so that each class file is read only once.
+ */
+public class LoaderEngine
+implements GroupingEngine, ConstantBindingEngine {
+
+  private final ClassSet toSpecialize;
+  private final BytecodeSource code;
+  private final boolean devirtualize;
+  private final SpecializationMetrics metrics;
+
+  public LoaderEngine(ClassSet toSpecialize) {
+    this(toSpecialize, new ResourceBytecodeSource(toSpecialize.classLoader()));
+  }
+
+  public LoaderEngine(ClassSet toSpecialize, BytecodeSource code) {
+    this(toSpecialize, code, false);
+  }
+
+  /**
+   * An engine that
+   * binds the calls in the copied ancestors of each specialized class to
+   * the implementations of that class (see {@link Devirtualization}),
+   * so that they are monomorphic by construction,
+   * instead of relying on the profiles of the JIT.
+   * Group specializations are not devirtualized,
+   * because their ancestors are shared by several classes.
+   */
+  public static LoaderEngine devirtualizing(
+      ClassSet toSpecialize, BytecodeSource code) {
+    return new LoaderEngine(toSpecialize, code, true);
+  }
+
+  private LoaderEngine(
+      ClassSet toSpecialize, BytecodeSource code, boolean devirtualize) {
+    this.toSpecialize = toSpecialize;
+    this.metrics = new SpecializationMetrics();
+    this.code = new BytecodeCache(metrics.counting(code));
+    this.devirtualize = devirtualize;
+  }
+
+  @Override
+  public ClassSet classSet() {return toSpecialize;}
+
+  @Override
+  public SpecializationMetrics metrics() {return metrics;}
+
+  @Override
+  public Class<?> specialize(String classname)
+  throws ClassNotFoundException {
+    return new SpecializingClassLoader(toSpecialize, code(classname), metrics)
+      .loadClass(classname);
+  }
+
+  @Override
+  public Class<?> specialize(String classname, Map<String,Object> constants)
+  throws ClassNotFoundException {
+    final Class<?> klass = toSpecialize.classLoader().loadClass(classname);
+    return new SpecializingClassLoader(toSpecialize,
+        new ConstantBinding(code(classname), toSpecialize, klass, constants),
+        metrics)
+      .loadClass(classname);
+  }
+
+  @Override
+  public Group newGroup() {
+    return new SpecializingClassLoader(toSpecialize, code, metrics)::loadClass;
+  }
+
+  /** Class files for a specialization of {@code classname}. */
+  private BytecodeSource code(String classname)
+  throws ClassNotFoundException {
+    return !devirtualize ? code : new Devirtualization(code, toSpecialize,
+        toSpecialize.classLoader().loadClass(classname));
+  }
+}
@@ -0,0 +1,97 @@
+package org.seismotech.laespe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Represents the hierarchies of some {@link Specializable} roots,
+ * as listed at compile time by {@link SpecializableProcessor}.
+ * Contains all strict subtypes of the roots that were compiled with the
+ * processor.
+ *
+ * <p>All the manifests ({@value #MANIFEST}) visible from the reference
+ * class loader are read once, at construction;
+ * from then on, membership is decided from the class name with a
+ * {@link PerfectHashNames} lookup, so that startup pays no class loading
+ * nor class file reading to decide what to copy.
+ * Subtypes compiled without the processor,
+ * or generated at run time,
+ * don't belong to the set.
+ */
+public class ManifestClassSet implements ClassSet {
+
+  /** Resource name of the manifests written by the processor. */
+  public static final String MANIFEST
+    = "META-INF/laespe/specializable.properties";
+
+  private final ClassLoader clref;
+  private final PerfectHashNames names;
+
+  public ManifestClassSet(Class<?>... roots)
+  throws IOException {
+    this(roots[0].getClassLoader(), names(roots));
+  }
+
+  /**
+   * The hierarchies of {@code roots}, given by name so that they are not
+   * loaded, in the manifests of {@code clref}.
+   */
+  public ManifestClassSet(ClassLoader clref, String... roots)
+  throws IOException {
+    this.clref = clref;
+    final Set<String> pending = new HashSet<>(List.of(roots));
+    final List<String> members = new ArrayList<>();
+    final Enumeration<URL> manifests = clref.getResources(MANIFEST);
+    while (manifests.hasMoreElements()) {
+      final Properties props = new Properties();
+      try (final InputStream in = manifests.nextElement().openStream()) {
+        props.load(in);
+      }
+      for (final String root: roots) {
+        final String listed = props.getProperty(root);
+        if (listed == null) continue;
+        pending.remove(root);
+        for (final String name: listed.split(",")) {
+          if (!name.isBlank()) members.add(name.trim());
+        }
+      }
+    }
+    if (!pending.isEmpty()) throw new IllegalArgumentException(
+      "No " + MANIFEST + " lists the hierarchy of " + pending
+      + "; are they annotated with @" + Specializable.class.getSimpleName()
+      + " and compiled with " + SpecializableProcessor.class.getName() + "?");
+    this.names = new PerfectHashNames(members);
+  }
+
+  private static String[] names(Class<?>[] classes) {
+    final String[] names = new String[classes.length];
+    for (int i = 0; i < classes.length; i++) names[i] = classes[i].getName();
+    return names;
+  }
+
+  @Override
+  public ClassLoader classLoader() {return clref;}
+
+  @Override
+  public int cost() {return NAME_COST;}
+
+  /** Number of classes in the set. */
+  public int size() {return names.size();}
+
+  @Override
+  public boolean contains(Class<?> klass) {
+    return names.contains(klass.getName());
+  }
+
+  @Override
+  public boolean contains(String classname) {
+    return names.contains(classname);
+  }
+}
@@ -0,0 +1,230 @@
+package org.seismotech.laespe;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.seismotech.ground.lang.XClass;
+
+/**
+ * A jar (or zip) file mapped into memory and indexed once.
+ *
+ * <p>The central directory is read when the jar is opened;
+ * after that, locating an entry is a hash lookup.
+ * Stored (uncompressed) entries are served as slices of the mapped file,
+ * without any copy.
+ * Deflated entries are inflated once into a direct buffer and kept.
+ *
+ * <p>Jars nested inside another jar (as in fat jars) can be indexed with
+ * {@link #nested}, as long as the nested jar is stored, not deflated.
+ * {@link ClasspathBytecodeSource} accepts them as class path entries.
+ *
+ * <p>ZIP64 archives are not supported.
+ */
+public class MappedJar implements BytecodeSource {
+
+  private static final int LOCAL_SIG = 0x04034b50;
+  private static final int CENTRAL_SIG = 0x02014b50;
+  private static final int END_SIG = 0x06054b50;
+  private static final int END_SIZE = 22;
+  private static final int MAX_COMMENT = 0xFFFF;
+
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+
+  private final String name;
+  private final ByteBuffer data;
+  private final Map<String,Entry> index;
+  private final ConcurrentMap<String,ByteBuffer> inflated;
+
+  public MappedJar(Path jar)
+  throws IOException {
+    this(jar.toString(), map(jar));
+  }
+
+  private MappedJar(String name, ByteBuffer data)
+  throws IOException {
+    this.name = name;
+    this.data = data.order(ByteOrder.LITTLE_ENDIAN);
+    this.index = readIndex(name, this.data);
+    this.inflated = new ConcurrentHashMap<>();
+  }
+
+  private static ByteBuffer map(Path jar)
+  throws IOException {
+    try (FileChannel ch = FileChannel.open(jar, StandardOpenOption.READ)) {
+      final long size = ch.size();
+      if (size > Integer.MAX_VALUE) throw new IOException(
+        "Jar " + jar + " is too big to be mapped: " + size + " bytes");
+      return ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+  }
+
+  public String name() {return name;}
+
+  public boolean contains(String entryName) {
+    return index.containsKey(entryName);
+  }
+
+  @Override
+  public ByteBuffer bytecode(String classname)
+  throws ClassNotFoundException {
+    final ByteBuffer code;
+    try {
+      code = entry(XClass.classResourceName(classname));
+    } catch (IOException e) {
+      throw new ClassNotFoundException("Class " + classname
+          + " cannot be read from " + name + ": " + e.getMessage(), e);
+    }
+    if (code == null) throw new ClassNotFoundException(
+      "Class " + classname + " not found in " + name);
+    return code;
+  }
+
+  /**
+   * Returns a fresh read-only view of the content of entry
+   * {@code entryName},
+   * or {@code null} if there is no such entry.
+   */
+  public ByteBuffer entry(String entryName)
+  throws IOException {
+    final Entry entry = index.get(entryName);
+    if (entry == null) return null;
+    switch (entry.method) {
+    case STORED:
+      return data.slice(entry.offset, entry.size).asReadOnlyBuffer();
+    case DEFLATED:
+      ByteBuffer content = inflated.get(entryName);
+      if (content == null) {
+        final ByteBuffer fresh = inflate(entryName, entry);
+        content = inflated.putIfAbsent(entryName, fresh);
+        if (content == null) content = fresh;
+      }
+      return content.duplicate();
+    default:
+      throw new IOException("Entry " + entryName + " of " + name
+          + " uses unsupported compression method " + entry.method);
+    }
+  }
+
+  /**
+   * Indexes jar {@code entryName}, nested inside this jar.
+   * The nested jar must be stored, so that it can be mapped in place.
+   */
+  public MappedJar nested(String entryName)
+  throws IOException {
+    final Entry entry = index.get(entryName);
+    if (entry == null) throw new IOException(
+      "There is no entry " + entryName + " in " + name);
+    if (entry.method != STORED) throw new IOException(
+      "Nested jar " + entryName + " of " + name + " is not stored");
+    return new MappedJar(name + "!/" + entryName,
+        data.slice(entry.offset, entry.size));
+  }
+
+  private ByteBuffer inflate(String entryName, Entry entry)
+  throws IOException {
+    final ByteBuffer content
+      = ByteBuffer.allocateDirect(entry.size);
+    final Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(data.slice(entry.offset, entry.compressedSize));
+      while (content.hasRemaining() && !inflater.finished()) {
+        if (inflater.inflate(content) == 0
+            && (inflater.needsInput() || inflater.needsDictionary())) break;
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Entry " + entryName + " of " + name
+          + " is corrupted: " + e.getMessage(), e);
+    } finally {
+      inflater.end();
+    }
+    if (content.hasRemaining()) throw new IOException(
+      "Entry " + entryName + " of " + name + " is truncated");
+    content.flip();
+    return content.asReadOnlyBuffer();
+  }
+
+  //----------------------------------------------------------------------
+  private static class Entry {
+    final int method;
+    final int offset;
+    final int compressedSize;
+    final int size;
+
+    Entry(int method, int offset, int compressedSize, int size) {
+      this.method = method;
+      this.offset = offset;
+      this.compressedSize = compressedSize;
+      this.size = size;
+    }
+  }
+
+  private static Map<String,Entry> readIndex(String name, ByteBuffer data)
+  throws IOException {
+    final int end = findEnd(name, data);
+    final int entries = u16(data, end + 10);
+    final long dirOffset = u32(data, end + 16);
+    if (entries == 0xFFFF || dirOffset == 0xFFFFFFFFL) throw new IOException(
+      "ZIP64 jar " + name + " is not supported");
+    final Map<String,Entry> index = new HashMap<>(2 * entries);
+    int pos = (int) dirOffset;
+    for (int i = 0; i < entries; i++) {
+      if (data.getInt(pos) != CENTRAL_SIG) throw new IOException(
+        "Bad central directory entry at " + pos + " in " + name);
+      final int method = u16(data, pos + 10);
+      final long compressedSize = u32(data, pos + 20);
+      final long size = u32(data, pos + 24);
+      final int nameLen = u16(data, pos + 28);
+      final int extraLen = u16(data, pos + 30);
+      final int commentLen = u16(data, pos + 32);
+      final long local = u32(data, pos + 42);
+      if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL
+          || local == 0xFFFFFFFFL) throw new IOException(
+            "ZIP64 jar " + name + " is not supported");
+      final String entryName = string(data, pos + 46, nameLen);
+      if (data.getInt((int) local) != LOCAL_SIG) throw new IOException(
+        "Bad local header for " + entryName + " in " + name);
+      final int offset = (int) local + 30
+        + u16(data, (int) local + 26) + u16(data, (int) local + 28);
+      index.put(entryName,
+          new Entry(method, offset, (int) compressedSize, (int) size));
+      pos += 46 + nameLen + extraLen + commentLen;
+    }
+    return index;
+  }
+
+  private static int findEnd(String name, ByteBuffer data)
+  throws IOException {
+    final int last = data.limit() - END_SIZE;
+    final int first = Math.max(0, last - MAX_COMMENT);
+    for (int pos = last; pos >= first; pos--) {
+      if (data.getInt(pos) == END_SIG) return pos;
+    }
+    throw new IOException(name + " is not a jar file");
+  }
+
+  private static int u16(ByteBuffer data, int pos) {
+    return data.getShort(pos) & 0xFFFF;
+  }
+
+  private static long u32(ByteBuffer data, int pos) {
+    return data.getInt(pos) & 0xFFFFFFFFL;
+  }
+
+  private static String string(ByteBuffer data, int pos, int len) {
+    final byte[] bytes = new byte[len];
+    data.get(pos, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,225 @@
+package org.seismotech.laespe;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A class set defined by class names alone:
+ * explicit names, package prefixes, globs and regular expressions.
+ * Membership is decided from the name, without loading classes nor
+ * reading class files.
+ *
+ * <p>Globs are class names where
+ * {@code *} matches any sequence of characters but {@code .},
+ * {@code **} any sequence of characters,
+ * and {@code ?} any character but {@code .}.
+ * So {@code com.example.Foo} is an explicit name,
+ * {@code com.example.*} are the classes of package {@code com.example}
+ * (including nested classes, as {@code $} is not special),
+ * {@code com.example.**} also those of its subpackages,
+ * and {@code com.example.*Seq} a glob proper.
+ * Regular expressions must match the whole name.
+ *
+ * <p>All the names and patterns are held in a prefix trie of their literal
+ * prefixes, so that a name is only compared with the patterns sharing its
+ * prefix.
+ * The trie is compressed (each edge is labelled with a string, compared
+ * at once), so that a walk takes a step per branching point,
+ * not per character;
+ * for most names, as those of the JDK, it fails at the first step.
+ * Literal prefixes of regular expressions are guessed conservatively;
+ * an expression starting with a group or an alternation is tested on every
+ * name.
+ */
+public class NameClassSet implements ClassSet {
+
+  private final ClassLoader clref;
+  private final Node root;
+
+  public NameClassSet(ClassLoader clref, String... globs) {
+    this(clref, Arrays.asList(globs), List.of());
+  }
+
+  public NameClassSet(ClassLoader clref,
+      Collection<String> globs, Collection<Pattern> regexes) {
+    if (clref == null) throw new NullPointerException(
+      "A name class set needs a reference class loader");
+    this.clref = clref;
+    this.root = new Node("");
+    for (final String glob: globs) addGlob(glob);
+    for (final Pattern regex: regexes) {
+      root.at(literalPrefix(regex)).addPattern(regex);
+    }
+  }
+
+  @Override
+  public ClassLoader classLoader() {return clref;}
+
+  @Override
+  public int cost() {return NAME_COST;}
+
+  @Override
+  public boolean contains(Class<?> klass) {
+    return contains(klass.getName());
+  }
+
+  @Override
+  public boolean contains(String classname) {
+    final int n = classname.length();
+    Node node = root;
+    for (int i = 0; ; i += node.edge.length()) {
+      if (node.subpackages) return true;
+      if (node.members && i < n && classname.indexOf('.', i) < 0) return true;
+      for (final Pattern pattern: node.patterns) {
+        if (pattern.matcher(classname).matches()) return true;
+      }
+      if (i == n) return node.name;
+      node = node.child(classname.charAt(i));
+      if (node == null || !classname.startsWith(node.edge, i)) return false;
+    }
+  }
+
+  //----------------------------------------------------------------------
+  private void addGlob(String glob) {
+    int wild = 0;
+    while (wild < glob.length()
+        && glob.charAt(wild) != '*' && glob.charAt(wild) != '?') wild++;
+    final Node node = root.at(glob.substring(0, wild));
+    final String rest = glob.substring(wild);
+    if (rest.isEmpty()) node.name = true;
+    else if (rest.equals("*")) node.members = true;
+    else if (rest.equals("**")) node.subpackages = true;
+    else node.addPattern(Pattern.compile(globRegex(glob)));
+  }
+
+  private static String globRegex(String glob) {
+    final StringBuilder regex = new StringBuilder();
+    for (int i = 0; i < glob.length(); i++) {
+      final char c = glob.charAt(i);
+      if (c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+        regex.append(".*");
+        i++;
+      } else if (c == '*') {
+        regex.append("[^.]*");
+      } else if (c == '?') {
+        regex.append("[^.]");
+      } else {
+        if (!Character.isLetterOrDigit(c)) regex.append('\\');
+        regex.append(c);
+      }
+    }
+    return regex.toString();
+  }
+
+  /**
+   * Characters every match of {@code regex} starts with.
+   * Flags can make a literal match other strings
+   * (as {@link Pattern#CASE_INSENSITIVE} or {@link Pattern#COMMENTS}),
+   * so there is no prefix for a pattern with any flag.
+   */
+  static String literalPrefix(Pattern regex) {
+    return regex.flags() != 0 ? "" : literalPrefix(regex.pattern());
+  }
+
+  /**
+   * Characters every match of {@code regex} starts with:
+   * plain and escaped punctuation characters up to the first
+   * metacharacter, dropping the last one if it is quantified.
+   */
+  static String literalPrefix(String regex) {
+    if (regex.indexOf('|') >= 0) return "";
+    final StringBuilder prefix = new StringBuilder();
+    int i = regex.startsWith("^") ? 1 : 0;
+    while (i < regex.length()) {
+      final char c = regex.charAt(i);
+      final int len;
+      if (c == '\\' && i + 1 < regex.length()
+          && !Character.isLetterOrDigit(regex.charAt(i + 1))) {
+        prefix.append(regex.charAt(i + 1));
+        len = 2;
+      } else if (".[](){}*+?^$\\".indexOf(c) < 0) {
+        prefix.append(c);
+        len = 1;
+      } else {
+        break;
+      }
+      i += len;
+      if (i < regex.length() && "*+?{".indexOf(regex.charAt(i)) >= 0) {
+        if (regex.charAt(i) != '+') prefix.setLength(prefix.length() - 1);
+        break;
+      }
+    }
+    return prefix.toString();
+  }
+
+  //----------------------------------------------------------------------
+  private static final Pattern[] NO_PATTERNS = {};
+
+  private static class Node {
+    /** Label of the edge from the parent. */
+    String edge;
+    /** First characters of the edges to the children. */
+    private char[] keys = {};
+    private Node[] children = {};
+    /** A name ends here. */
+    boolean name;
+    /** Names with this prefix and no more dots. */
+    boolean members;
+    /** Names with this prefix. */
+    boolean subpackages;
+    /** Patterns with this literal prefix, matched against whole names. */
+    Pattern[] patterns = NO_PATTERNS;
+
+    Node child(char c) {
+      final char[] keys = this.keys;
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] == c) return children[i];
+      }
+      return null;
+    }
+
+    Node(String edge) {this.edge = edge;}
+
+    /** The node for {@code prefix} below this one, splitting edges. */
+    Node at(String prefix) {
+      Node node = this;
+      int i = 0;
+      while (i < prefix.length()) {
+        int k = 0;
+        while (k < node.keys.length && node.keys[k] != prefix.charAt(i)) k++;
+        if (k == node.keys.length) {
+          final Node leaf = new Node(prefix.substring(i));
+          node.keys = Arrays.copyOf(node.keys, k + 1);
+          node.children = Arrays.copyOf(node.children, k + 1);
+          node.keys[k] = prefix.charAt(i);
+          node.children[k] = leaf;
+          return leaf;
+        }
+        Node child = node.children[k];
+        int common = 1;
+        while (common < child.edge.length() && i + common < prefix.length()
+            && child.edge.charAt(common) == prefix.charAt(i + common)) {
+          common++;
+        }
+        if (common < child.edge.length()) {
+          final Node mid = new Node(child.edge.substring(0, common));
+          child.edge = child.edge.substring(common);
+          mid.keys = new char[] {child.edge.charAt(0)};
+          mid.children = new Node[] {child};
+          node.children[k] = mid;
+          child = mid;
+        }
+        i += common;
+        node = child;
+      }
+      return node;
+    }
+
+    void addPattern(Pattern pattern) {
+      patterns = Arrays.copyOf(patterns, patterns.length + 1);
+      patterns[patterns.length - 1] = pattern;
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package org.seismotech.laespe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An immutable set of names with a perfect hash (hash and displace):
+ * a name is looked up with one probe in a table as large as the set.
+ *
+ * <p>Names are spread in buckets by their {@link String#hashCode},
+ * which strings cache.
+ * Each bucket has a seed, chosen at construction, that maps its names to
+ * free slots of the table;
+ * a bucket with a single name just records its slot.
+ * A lookup mixes the hash with the seed of its bucket,
+ * compares the hash with that of the name in the slot,
+ * and only then compares the strings.
+ * In the unlikely case that no seed fits some bucket,
+ * the table is enlarged a bit and the construction starts over.
+ *
+ * <p>Names with the same {@code hashCode} cannot be told apart by a seed;
+ * all but one of them are kept in a plain set, checked after a miss.
+ */
+final class PerfectHashNames {
+
+  /** Average names per bucket. */
+  private static final int BUCKET_SIZE = 4;
+  private static final int MAX_SEED = 1 << 16;
+
+  private final int size;
+  private final Set<String> overflow;
+  private final int[] seeds;
+  private String[] names;
+  private int[] hashes;
+
+  PerfectHashNames(Collection<String> names) {
+    final Set<String> overflow = new HashSet<>();
+    final Set<Integer> known = new HashSet<>();
+    final List<String> distinct = new ArrayList<>();
+    for (final String name: new LinkedHashSet<>(names)) {
+      if (known.add(name.hashCode())) distinct.add(name);
+      else overflow.add(name);
+    }
+    this.size = distinct.size() + overflow.size();
+    this.overflow = overflow.isEmpty() ? null : overflow;
+    final int n = Math.max(1, distinct.size());
+    this.seeds = new int[(n - 1) / BUCKET_SIZE + 1];
+    for (int slots = n; !place(distinct, slots); slots += slots / 8 + 1);
+  }
+
+  int size() {return size;}
+
+  boolean contains(String name) {
+    final int h = name.hashCode();
+    final int seed = seeds[bucket(h, seeds.length)];
+    final int slot = seed < 0 ? -seed - 1 : slot(h, seed, names.length);
+    return hashes[slot] == h && name.equals(names[slot])
+      || overflow != null && overflow.contains(name);
+  }
+
+  //----------------------------------------------------------------------
+  /**
+   * Chooses the seeds for a table of {@code slots},
+   * placing the largest buckets first.
+   */
+  private boolean place(List<String> distinct, int slots) {
+    final List<List<String>> buckets = new ArrayList<>(seeds.length);
+    for (int i = 0; i < seeds.length; i++) buckets.add(new ArrayList<>());
+    for (final String name: distinct) {
+      buckets.get(bucket(name.hashCode(), seeds.length)).add(name);
+    }
+    final Integer[] order = new Integer[seeds.length];
+    for (int i = 0; i < order.length; i++) order[i] = i;
+    Arrays.sort(order, (a, b) -> buckets.get(b).size() - buckets.get(a).size());
+    names = new String[slots];
+    hashes = new int[slots];
+    final int[] bucketSlots = new int[buckets.get(order[0]).size()];
+    int free = 0;
+    for (final int b: order) {
+      final List<String> bucket = buckets.get(b);
+      if (bucket.isEmpty()) break;
+      if (bucket.size() == 1) {
+        while (names[free] != null) free++;
+        seeds[b] = -free - 1;
+        put(bucket.get(0), free);
+        continue;
+      }
+      int seed = 0;
+      while (!fits(bucket, seed, bucketSlots)) {
+        if (++seed == MAX_SEED) return false;
+      }
+      seeds[b] = seed;
+      for (int i = 0; i < bucket.size(); i++) {
+        put(bucket.get(i), bucketSlots[i]);
+      }
+    }
+    return true;
+  }
+
+  private boolean fits(List<String> bucket, int seed, int[] bucketSlots) {
+    for (int i = 0; i < bucket.size(); i++) {
+      final int slot = slot(bucket.get(i).hashCode(), seed, names.length);
+      if (names[slot] != null) return false;
+      for (int j = 0; j < i; j++) if (bucketSlots[j] == slot) return false;
+      bucketSlots[i] = slot;
+    }
+    return true;
+  }
+
+  private void put(String name, int slot) {
+    names[slot] = name;
+    hashes[slot] = name.hashCode();
+  }
+
+  private static int bucket(int h, int buckets) {
+    return ((h * 0x9E3779B9) >>> 1) % buckets;
+  }
+
+  private static int slot(int h, int seed, int slots) {
+    int x = h ^ seed * 0x85EBCA6B;
+    x ^= x >>> 16;
+    x *= 0x7FEB352D;
+    x ^= x >>> 15;
+    return (x >>> 1) % slots;
+  }
+}
@@ -0,0 +1,92 @@
+package org.seismotech.laespe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Specializations generated at build time by {@link Pregenerator}.
+ *
+ * <p>Pregenerated copies are ordinary classes with unique names,
+ * loaded by the class loader where they are found,
+ * so there is no runtime bytecode reading nor class definition through a
+ * specializing loader.
+ * When they are packaged in a jar of the class path,
+ * they can be dumped into an AppCDS archive,
+ * which also saves parsing, verification and most of the linking on
+ * later starts:
+ * <pre>
+ * java -XX:ArchiveClassesAtExit=app.jsa -cp app.jar:specs.jar ...
+ * java -XX:SharedArchiveFile=app.jsa -cp app.jar:specs.jar ...
+ * </pre>
+ * Classes in directories cannot be archived.
+ *
+ * <p>Copies have names different from the original classes
+ * (see {@link Pregenerator}).
+ */
+public class PregeneratedSpecializations {
+
+  /** Resource name of the index written by {@link Pregenerator}. */
+  public static final String INDEX
+    = "META-INF/laespe/pregenerated.properties";
+
+  private final ClassLoader loader;
+  private final Map<String,List<String>> copies;
+
+  /** Pregenerated specializations in all the indexes of {@code loader}. */
+  public PregeneratedSpecializations(ClassLoader loader)
+  throws IOException {
+    this.loader = loader;
+    this.copies = new HashMap<>();
+    final Enumeration<URL> indexes = loader.getResources(INDEX);
+    while (indexes.hasMoreElements()) {
+      final Properties props = new Properties();
+      try (final InputStream in = indexes.nextElement().openStream()) {
+        props.load(in);
+      }
+      for (final String classname: props.stringPropertyNames()) {
+        final List<String> names
+          = copies.computeIfAbsent(classname, k -> new ArrayList<>());
+        for (final String name: props.getProperty(classname).split(",")) {
+          if (!name.isBlank()) names.add(name.trim());
+        }
+      }
+    }
+  }
+
+  /** Number of pregenerated copies of {@code klass}. */
+  public int copies(Class<?> klass) {
+    return names(klass).size();
+  }
+
+  /** Copy number {@code i} of {@code klass}, initialized. */
+  public Class<?> specialized(Class<?> klass, int i)
+  throws ClassNotFoundException {
+    final List<String> names = names(klass);
+    if (i < 0 || names.size() <= i) throw new ClassNotFoundException(
+      "There is no pregenerated copy " + i + " of class " + klass.getName()
+      + "; there are " + names.size());
+    return Class.forName(names.get(i), true, loader);
+  }
+
+  /** All the copies of {@code klass}. */
+  public List<Class<?>> specializations(Class<?> klass)
+  throws ClassNotFoundException {
+    final List<Class<?>> classes = new ArrayList<>();
+    for (int i = 0; i < copies(klass); i++) {
+      classes.add(specialized(klass, i));
+    }
+    return classes;
+  }
+
+  private List<String> names(Class<?> klass) {
+    return copies.getOrDefault(klass.getName(), Collections.emptyList());
+  }
+}
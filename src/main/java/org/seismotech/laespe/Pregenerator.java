@@ -0,0 +1,178 @@
+package org.seismotech.laespe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.Remapper;
+
+/**
+ * Generates specializations at build time, as class files with unique
+ * names, to be loaded with {@link PregeneratedSpecializations}.
+ *
+ * <p>The copy number {@code s} of a class {@code C} in the
+ * {@link ClassSet}, and of all the classes of the set it depends on,
+ * are renamed to {@code C$$Laespe<s>}, in the same package.
+ * References to classes of the set are renamed accordingly,
+ * except for class names in strings
+ * (as in {@code Class.forName("...")}).
+ * The generated class files are ordinary classes:
+ * packaged in a jar on the class path,
+ * they are loaded by the application class loader and can be stored in a
+ * CDS archive (see {@link PregeneratedSpecializations}).
+ *
+ * <p>Besides the class files, an index
+ * ({@value PregeneratedSpecializations#INDEX}) maps each specialized class
+ * to the names of its copies.
+ *
+ * <p>{@link #main} reads a declarative spec in properties format:
+ * <pre>
+ * # Hierarchies to specialize (see HierarchyClassSet)
+ * roots = org.seismotech.laespe.example.widehierarchy.Seq
+ * # Copies to generate for each class
+ * copies.org.seismotech.laespe.example.widehierarchy.IntSeq = 4
+ * copies.org.seismotech.laespe.example.widehierarchy.LongSeq = 2
+ * </pre>
+ * See task {@code pregenerateSpecializations} in {@code build.gradle}.
+ */
+public class Pregenerator {
+
+  private static final String ROOTS = "roots";
+  private static final String COPIES = "copies.";
+
+  private final ClassSet toSpecialize;
+  private final BytecodeSource code;
+  private final Map<String,byte[]> classFiles;
+  private final Map<String,List<String>> index;
+  private int counter;
+
+  public Pregenerator(ClassSet toSpecialize) {
+    this(toSpecialize, new ResourceBytecodeSource(toSpecialize.classLoader()));
+  }
+
+  public Pregenerator(ClassSet toSpecialize, BytecodeSource code) {
+    this.toSpecialize = toSpecialize;
+    this.code = new BytecodeCache(code);
+    this.classFiles = new HashMap<>();
+    this.index = new HashMap<>();
+  }
+
+  /**
+   * Generates {@code copies} specializations of {@code klass}.
+   * @return The names of the generated copies of {@code klass}.
+   */
+  public List<String> generate(Class<?> klass, int copies)
+  throws ClassNotFoundException {
+    if (!toSpecialize.contains(klass)) throw new ClassNotFoundException(
+      "Class `" + klass.getName()
+      + "` doesn't belong to the hierarchy this generator manages");
+    final List<String> names
+      = index.computeIfAbsent(klass.getName(), k -> new ArrayList<>());
+    for (int i = 0; i < copies; i++) {
+      final String suffix = "$$Laespe" + counter++;
+      names.add(copy(klass.getName().replace('.', '/'), suffix)
+          .replace('/', '.'));
+    }
+    return names;
+  }
+
+  /**
+   * Renames {@code root}, and the classes of the set it depends on
+   * transitively, adding {@code suffix}.
+   * @return The internal name of the copy of {@code root}.
+   */
+  private String copy(String root, String suffix)
+  throws ClassNotFoundException {
+    final Map<String,String> renamed = new HashMap<>();
+    final Deque<String> pending = new ArrayDeque<>();
+    final Remapper remapper = new Remapper() {
+      @Override
+      public String map(String internalName) {
+        String name = renamed.get(internalName);
+        if (name == null
+            && toSpecialize.contains(internalName.replace('/', '.'))) {
+          name = internalName + suffix;
+          renamed.put(internalName, name);
+          pending.add(internalName);
+        }
+        return name != null ? name : internalName;
+      }
+    };
+    remapper.map(root);
+    while (!pending.isEmpty()) {
+      final String internalName = pending.poll();
+      final ByteBuffer buffer = code.bytecode(internalName.replace('/', '.'));
+      final byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      final ClassWriter writer = new ClassWriter(0);
+      new ClassReader(bytes).accept(new ClassRemapper(writer, remapper), 0);
+      classFiles.put(renamed.get(internalName), writer.toByteArray());
+    }
+    return renamed.get(root);
+  }
+
+  /** Writes the generated class files and the index below {@code dir}. */
+  public void write(Path dir)
+  throws IOException {
+    for (final Map.Entry<String,byte[]> classFile: classFiles.entrySet()) {
+      final Path file = dir.resolve(classFile.getKey() + ".class");
+      Files.createDirectories(file.getParent());
+      Files.write(file, classFile.getValue());
+    }
+    final Properties props = new Properties();
+    for (final Map.Entry<String,List<String>> entry: index.entrySet()) {
+      props.setProperty(entry.getKey(), String.join(",", entry.getValue()));
+    }
+    final Path indexFile = dir.resolve(PregeneratedSpecializations.INDEX);
+    Files.createDirectories(indexFile.getParent());
+    try (final OutputStream out = Files.newOutputStream(indexFile)) {
+      props.store(out, "Generated by " + Pregenerator.class.getName());
+    }
+  }
+
+  //----------------------------------------------------------------------
+  /**
+   * Usage: {@code Pregenerator <spec file> <output dir>}.
+   * Classes are loaded from the class path.
+   */
+  public static void main(String[] args)
+  throws IOException, ClassNotFoundException {
+    if (args.length != 2) {
+      System.err.println("Usage: " + Pregenerator.class.getName()
+          + " <spec file> <output dir>");
+      System.exit(1);
+    }
+    final Properties spec = new Properties();
+    try (final InputStream in = Files.newInputStream(Paths.get(args[0]))) {
+      spec.load(in);
+    }
+    final ClassLoader loader = Pregenerator.class.getClassLoader();
+    final List<Class<?>> roots = new ArrayList<>();
+    for (final String root: spec.getProperty(ROOTS, "").split(",")) {
+      if (!root.isBlank()) roots.add(loader.loadClass(root.trim()));
+    }
+    final Pregenerator generator = new Pregenerator(new HierarchyClassSet(
+        loader, roots.toArray(new Class<?>[0])));
+    for (final String key: new TreeSet<>(spec.stringPropertyNames())) {
+      if (!key.startsWith(COPIES)) continue;
+      generator.generate(loader.loadClass(key.substring(COPIES.length())),
+          Integer.parseInt(spec.getProperty(key).trim()));
+    }
+    generator.write(Paths.get(args[1]));
+  }
+}
@@ -0,0 +1,36 @@
+package org.seismotech.laespe;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+
+import org.seismotech.ground.lang.XClass;
+import org.seismotech.ground.io.XStream;
+
+/**
+ * A {@link BytecodeSource} reading class files as resources of a class loader.
+ * Each request reads the whole class file again;
+ * wrap it into a {@link BytecodeCache} to read each class only once.
+ */
+public class ResourceBytecodeSource implements BytecodeSource {
+
+  private final ClassLoader loader;
+
+  public ResourceBytecodeSource(ClassLoader loader) {
+    this.loader = loader;
+  }
+
+  @Override
+  public ByteBuffer bytecode(String classname)
+  throws ClassNotFoundException {
+    final URL code = loader.getResource(XClass.classResourceName(classname));
+    if (code == null) throw new ClassNotFoundException(
+      "Resource for class " + classname + " not found");
+    try {
+      return ByteBuffer.wrap(XStream.read(code));
+    } catch (IOException e) {
+      throw new ClassNotFoundException("Resource for class " + classname
+          + " cannot be read: " + e.getMessage(), e);
+    }
+  }
+}
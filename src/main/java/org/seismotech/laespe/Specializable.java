@@ -0,0 +1,19 @@
+package org.seismotech.laespe;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the root of a specializable hierarchy.
+ * {@link SpecializableProcessor} lists at compile time the strict subtypes
+ * of the marked type in a manifest,
+ * that {@link ManifestClassSet} reads at run time.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface Specializable {
+}
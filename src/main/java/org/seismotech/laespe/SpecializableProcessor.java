@@ -0,0 +1,132 @@
+package org.seismotech.laespe;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor writing the manifest of the hierarchies rooted at
+ * {@link Specializable} types ({@value ManifestClassSet#MANIFEST}).
+ *
+ * <p>For each root annotated in the compiled sources,
+ * or inherited from the class path by a compiled type,
+ * the manifest lists the binary names of the compiled types that are strict
+ * subtypes of the root, as a property:
+ * <pre>
+ * org.example.Seq = org.example.AbsSeq,org.example.IntSeq
+ * </pre>
+ * Every type declared in the compiled sources is checked, annotated or not,
+ * so the processor claims all the annotations ({@code "*"})
+ * but doesn't consume any.
+ * Local and anonymous classes are not listed.
+ * Each compilation writes its own manifest;
+ * {@link ManifestClassSet} merges all the manifests on the class path.
+ *
+ * <p>The processor is registered as a service only in the jar of this
+ * library with classifier {@code processor},
+ * so that the runtime jar doesn't run it on every compilation;
+ * with Gradle, add that jar to the {@code annotationProcessor}
+ * configuration:
+ * <pre>
+ * annotationProcessor 'org.seismotech:laespe:&lt;version&gt;:processor'
+ * </pre>
+ * It is declared to Gradle as an aggregating incremental processor.
+ *
+ * <p>The manifest of a compilation only lists the types compiled in it.
+ * When a build tool compiles a subset of the sources on its own
+ * (without reprocessing the rest, as Gradle does for aggregating
+ * processors), the manifest it writes misses the subtypes compiled
+ * before; a full rebuild restores them.
+ */
+@SupportedAnnotationTypes("*")
+public class SpecializableProcessor extends AbstractProcessor {
+
+  /** Members by root binary name. */
+  private final Map<String,Set<String>> hierarchies = new TreeMap<>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(
+      Set<? extends TypeElement> annotations, RoundEnvironment round) {
+    if (round.processingOver()) {
+      if (!hierarchies.isEmpty()) write();
+      return false;
+    }
+    for (final Element root:
+             round.getElementsAnnotatedWith(Specializable.class)) {
+      hierarchies.computeIfAbsent(
+        binaryName((TypeElement) root), k -> new TreeSet<>());
+    }
+    for (final Element element: round.getRootElements()) visit(element);
+    return false;
+  }
+
+  private void visit(Element element) {
+    if (!(element instanceof TypeElement)) return;
+    final TypeElement type = (TypeElement) element;
+    final Set<String> roots = new HashSet<>();
+    annotatedSupertypes(type.asType(), roots, new HashSet<>());
+    for (final String root: roots) {
+      hierarchies.computeIfAbsent(root, k -> new TreeSet<>())
+        .add(binaryName(type));
+    }
+    for (final Element enclosed: type.getEnclosedElements()) visit(enclosed);
+  }
+
+  private void annotatedSupertypes(
+      TypeMirror type, Set<String> roots, Set<String> visited) {
+    for (final TypeMirror sup:
+             processingEnv.getTypeUtils().directSupertypes(type)) {
+      final Element element = processingEnv.getTypeUtils().asElement(sup);
+      if (!(element instanceof TypeElement)) continue;
+      final String name = binaryName((TypeElement) element);
+      if (!visited.add(name)) continue;
+      if (element.getAnnotation(Specializable.class) != null) roots.add(name);
+      annotatedSupertypes(sup, roots, visited);
+    }
+  }
+
+  private String binaryName(TypeElement type) {
+    return processingEnv.getElementUtils().getBinaryName(type).toString();
+  }
+
+  /**
+   * Writes the manifest, without the timestamp of
+   * {@link java.util.Properties#store}, to keep builds reproducible.
+   */
+  private void write() {
+    try {
+      final FileObject manifest = processingEnv.getFiler().createResource(
+        StandardLocation.CLASS_OUTPUT, "", ManifestClassSet.MANIFEST);
+      try (final Writer out = manifest.openWriter()) {
+        out.write("# Generated by " + getClass().getName() + "\n");
+        for (final Map.Entry<String,Set<String>> hierarchy:
+                 hierarchies.entrySet()) {
+          out.write(hierarchy.getKey() + "="
+              + String.join(",", hierarchy.getValue()) + "\n");
+        }
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+          "While writing " + ManifestClassSet.MANIFEST + ": " + e.getMessage());
+    }
+  }
+}
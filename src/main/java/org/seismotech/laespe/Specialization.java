@@ -0,0 +1,118 @@
+package org.seismotech.laespe;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A handle on a specialized class, to release it explicitly
+ * (see {@link BoundedSpecializer#specialization}).
+ *
+ * <p>A handle holds its class, and the factories created through it,
+ * until it is closed.
+ * After {@link #close}, the handle doesn't pin the class anymore;
+ * the class will be unloaded as soon as nothing else references it
+ * (nor its class loader, for {@link LoaderEngine} specializations),
+ * and {@link #unloaded} will complete.
+ * Unloading is detected with a {@link java.lang.ref.Cleaner},
+ * some time after the class is collected.
+ *
+ * <p>A closed specialization that is never unloaded is a leak:
+ * some instance, factory or class of its loader is still reachable.
+ * {@link BoundedSpecializer#leakedSpecializations} names them.
+ * {@link #liveFactories} tells whether factories created by the handle are
+ * still reachable.
+ */
+public class Specialization implements AutoCloseable {
+
+  private final String description;
+  private final CompletableFuture<Void> unloaded;
+  private final Set<String> closedAlive;
+  private final List<WeakReference<Object>> factoryRefs;
+  private Class<?> klass;
+  private List<Object> factories;
+
+  Specialization(Class<?> klass, Set<String> closedAlive) {
+    this.klass = klass;
+    this.description = klass.getName()
+      + (klass.isHidden() ? "" : " in " + SpecializationEvents.loaderOf(klass));
+    this.unloaded = new CompletableFuture<>();
+    this.closedAlive = closedAlive;
+    this.factoryRefs = new ArrayList<>();
+    this.factories = new ArrayList<>();
+    final String description = this.description;
+    final CompletableFuture<Void> unloaded = this.unloaded;
+    SpecializationMetrics.CLEANER.register(klass, () -> {
+      unloaded.complete(null);
+      closedAlive.remove(description);
+    });
+  }
+
+  /** The specialized class, naming its loader. */
+  public String description() {return description;}
+
+  /** The specialized class. */
+  public synchronized Class<?> specializedClass() {
+    checkOpen();
+    return klass;
+  }
+
+  /**
+   * A factory for the specialized class
+   * (see {@link Instantiation#fastFactory}),
+   * held by this handle until it is closed.
+   */
+  public synchronized <F> F factory(Class<? super F> factClass,
+      String factMethodName, Class<?>... argTypes)
+  throws InstantiationRelatedException {
+    checkOpen();
+    @SuppressWarnings("unchecked")
+    final F fact = (F) Instantiation.fastFactory(
+      klass, factClass, factMethodName, argTypes);
+    factories.add(fact);
+    factoryRefs.add(new WeakReference<>(fact));
+    return fact;
+  }
+
+  /** Number of factories created by this handle still reachable. */
+  public synchronized int liveFactories() {
+    int live = 0;
+    for (final WeakReference<Object> ref: factoryRefs) {
+      if (ref.get() != null) live++;
+    }
+    return live;
+  }
+
+  public synchronized boolean isClosed() {return klass == null;}
+
+  /** Completes when the specialized class is unloaded. */
+  public CompletableFuture<Void> unloaded() {return unloaded;}
+
+  /**
+   * Drops the references of this handle to the specialized class
+   * and its factories.
+   * From now on, the specialization is reported as leaked until it is
+   * unloaded.
+   */
+  @Override
+  public synchronized void close() {
+    if (klass == null) return;
+    klass = null;
+    factories = null;
+    closedAlive.add(description);
+    if (unloaded.isDone()) closedAlive.remove(description);
+  }
+
+  @Override
+  public String toString() {
+    return "Specialization of " + description
+      + (isClosed() ? unloaded.isDone() ? " (unloaded)" : " (closed)" : "");
+  }
+
+  private void checkOpen() {
+    if (klass == null) throw new IllegalStateException(
+      "Specialization of " + description + " is closed");
+  }
+}
@@ -0,0 +1,230 @@
+package org.seismotech.laespe;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits on the resources taken by specializations
+ * (see {@link BoundedSpecializer#BoundedSpecializer(SpecializationEngine,
+ * SpecializationBudget)}).
+ *
+ * <p>A budget bounds the number of live copies,
+ * the class file bytes copied by them,
+ * and the fraction of the code cache in use
+ * (as reported by the code heap memory pools),
+ * since every hot copy gets its own compiled code.
+ * A copy is live until it is unloaded.
+ * Copied bytes are the class files defined so far by the loaders of the
+ * live copies, including the classes they copy lazily after creation;
+ * hidden copies only count as copies.
+ *
+ * <p>When the budget is exceeded, a request doesn't create a new copy;
+ * it quietly gets a {@link Fallback} class instead.
+ * Fallbacks are counted and reported as JFR events
+ * ({@code org.seismotech.laespe.SpecializationFallback}).
+ *
+ * <p>A budget can be shared by several specializers.
+ * Concurrent requests can exceed the bytes limit by one copy each.
+ */
+public class SpecializationBudget {
+
+  /** What to return when the budget is exceeded. */
+  public enum Fallback {
+    /** The original, shared, class. */
+    SHARED,
+    /**
+     * The live copy of the same class least recently handed out,
+     * or the original class if there is none.
+     * A copy is handed out when it is created and each time it is
+     * returned as a fallback;
+     * uses of the class afterwards are not tracked.
+     */
+    LRU
+  }
+
+  private final int maxLiveCopies;
+  private final long maxCopiedBytes;
+  private final double maxCodeCacheUsage;
+  private final Fallback fallback;
+  /** Live copies by loader of the originals and class name. */
+  private final Map<ClassLoader,Map<String,List<Copy>>> copies;
+  private final LongAdder sharedFallbacks;
+  private final LongAdder lruFallbacks;
+  private int liveCopies;
+
+  /**
+   * @param maxCodeCacheUsage fraction of the code cache capacity in use
+   * above which no more copies are created; 1 to disable this limit.
+   */
+  public SpecializationBudget(int maxLiveCopies, long maxCopiedBytes,
+      double maxCodeCacheUsage, Fallback fallback) {
+    if (maxLiveCopies <= 0) throw new IllegalArgumentException(
+      "Max live copies should be positive: " + maxLiveCopies);
+    if (maxCopiedBytes <= 0) throw new IllegalArgumentException(
+      "Max copied bytes should be positive: " + maxCopiedBytes);
+    if (!(0 < maxCodeCacheUsage && maxCodeCacheUsage <= 1)) {
+      throw new IllegalArgumentException(
+        "Max code cache usage should be in (0, 1]: " + maxCodeCacheUsage);
+    }
+    if (fallback == null) throw new IllegalArgumentException(
+      "Fallback should not be null");
+    this.maxLiveCopies = maxLiveCopies;
+    this.maxCopiedBytes = maxCopiedBytes;
+    this.maxCodeCacheUsage = maxCodeCacheUsage;
+    this.fallback = fallback;
+    this.copies = new WeakHashMap<>();
+    this.sharedFallbacks = new LongAdder();
+    this.lruFallbacks = new LongAdder();
+  }
+
+  public synchronized int liveCopies() {return liveCopies;}
+
+  /** Class file bytes copied so far by the loaders of the live copies. */
+  public synchronized long copiedBytes() {
+    final Set<ClassLoader> loaders
+      = Collections.newSetFromMap(new IdentityHashMap<>());
+    long bytes = 0;
+    for (final Map<String,List<Copy>> loaderCopies: copies.values()) {
+      for (final List<Copy> classCopies: loaderCopies.values()) {
+        for (final Copy copy: classCopies) {
+          final Class<?> klass = copy.klass.get();
+          if (klass == null) continue;
+          final ClassLoader loader = klass.getClassLoader();
+          if (loader instanceof SpecializingClassLoader
+              && loaders.add(loader)) {
+            bytes += ((SpecializingClassLoader) loader).copiedBytes();
+          }
+        }
+      }
+    }
+    return bytes;
+  }
+
+  /** Requests answered with the original class. */
+  public long sharedFallbacks() {return sharedFallbacks.sum();}
+
+  /** Requests answered with an existing copy. */
+  public long lruFallbacks() {return lruFallbacks.sum();}
+
+  public long fallbacks() {return sharedFallbacks() + lruFallbacks();}
+
+  @Override
+  public String toString() {
+    return "SpecializationBudget: " + liveCopies() + "/" + maxLiveCopies
+      + " live copies, " + copiedBytes() + "/" + maxCopiedBytes
+      + " copied bytes; fallbacks " + sharedFallbacks() + " shared, "
+      + lruFallbacks() + " LRU";
+  }
+
+  //----------------------------------------------------------------------
+  /**
+   * Reserves room for a new copy of {@code classname},
+   * returning {@code null};
+   * or, if the budget is exceeded, returns the class to use instead.
+   * A reservation must be followed by {@link #admitted} or {@link #cancel}.
+   */
+  synchronized Class<?> reserve(String classname, ClassLoader originals)
+  throws ClassNotFoundException {
+    final String exceeded = exceeded();
+    if (exceeded == null) {
+      liveCopies++;
+      return null;
+    }
+    final Class<?> lru = fallback == Fallback.LRU
+      ? leastRecentlyUsed(classname, originals) : null;
+    if (lru != null) {
+      lruFallbacks.increment();
+      SpecializationEvents.SpecializationFallback.fallback(
+        classname, exceeded, "LRU copy");
+      return lru;
+    }
+    sharedFallbacks.increment();
+    SpecializationEvents.SpecializationFallback.fallback(
+      classname, exceeded, "shared class");
+    return originals.loadClass(classname);
+  }
+
+  synchronized void cancel() {
+    liveCopies--;
+  }
+
+  synchronized void admitted(
+      String classname, ClassLoader originals, Class<?> spec) {
+    final List<Copy> classCopies = copies
+      .computeIfAbsent(originals, k -> new HashMap<>())
+      .computeIfAbsent(classname, k -> new ArrayList<>());
+    classCopies.removeIf(copy -> copy.klass.get() == null);
+    classCopies.add(new Copy(spec));
+    SpecializationMetrics.CLEANER.register(spec, this::released);
+  }
+
+  private synchronized void released() {
+    liveCopies--;
+  }
+
+  /** The exceeded limit, if any. */
+  private String exceeded() {
+    if (liveCopies >= maxLiveCopies) return "live copies";
+    if (copiedBytes() >= maxCopiedBytes) return "copied bytes";
+    if (maxCodeCacheUsage < 1 && codeCacheUsage() >= maxCodeCacheUsage) {
+      return "code cache";
+    }
+    return null;
+  }
+
+  private Class<?> leastRecentlyUsed(String classname, ClassLoader originals) {
+    final Map<String,List<Copy>> loaderCopies = copies.get(originals);
+    if (loaderCopies == null) return null;
+    final List<Copy> classCopies = loaderCopies.get(classname);
+    if (classCopies == null) return null;
+    Copy lru = null;
+    Class<?> lruClass = null;
+    for (final Copy copy: classCopies) {
+      final Class<?> klass = copy.klass.get();
+      if (klass != null && (lru == null || copy.lastUse < lru.lastUse)) {
+        lru = copy;
+        lruClass = klass;
+      }
+    }
+    if (lru != null) lru.lastUse = System.nanoTime();
+    return lruClass;
+  }
+
+  /** Fraction of the code cache capacity in use. */
+  static double codeCacheUsage() {
+    long used = 0;
+    long max = 0;
+    for (final MemoryPoolMXBean pool:
+             ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() != MemoryType.NON_HEAP
+          || !pool.getName().startsWith("Code")) continue;
+      final MemoryUsage usage = pool.getUsage();
+      if (usage.getMax() < 0) continue;
+      used += usage.getUsed();
+      max += usage.getMax();
+    }
+    return max == 0 ? 0 : (double) used / max;
+  }
+
+  private static class Copy {
+    final WeakReference<Class<?>> klass;
+    long lastUse;
+
+    Copy(Class<?> klass) {
+      this.klass = new WeakReference<>(klass);
+      this.lastUse = System.nanoTime();
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package org.seismotech.laespe;
+
+/**
+ * The mechanism producing specialized copies of classes for a
+ * {@link BoundedSpecializer}.
+ *
+ * <p>{@link LoaderEngine} loads each specialization with its own
+ * {@link SpecializingClassLoader}.
+ * {@link HiddenClassEngine} defines each specialization as a hidden class,
+ * that can be unloaded on its own.
+ *
+ * <p>Optional capabilities are separate interfaces:
+ * {@link GroupingEngine} for specializations sharing their copies,
+ * and {@link ConstantBindingEngine} for binding fields to constants.
+ */
+public interface SpecializationEngine {
+
+  /** The classes this engine is able to specialize. */
+  ClassSet classSet();
+
+  /**
+   * Counters of the work done by this engine;
+   * always the same instance.
+   */
+  SpecializationMetrics metrics();
+
+  /**
+   * Returns a new specialized copy of class {@code classname}.
+   * {@code classname} is expected to belong to {@link #classSet()}.
+   */
+  Class<?> specialize(String classname) throws ClassNotFoundException;
+}
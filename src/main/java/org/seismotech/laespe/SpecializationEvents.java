@@ -0,0 +1,147 @@
+package org.seismotech.laespe;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder events of specialization activity.
+ *
+ * <p>Events are created, and timed, unconditionally,
+ * but their fields are only computed when they are going to be committed
+ * ({@link Event#shouldCommit}).
+ * When the events are disabled,
+ * the JIT reduces them to almost nothing.
+ */
+final class SpecializationEvents {
+
+  private SpecializationEvents() {}
+
+  static final String CATEGORY = "LaEspe";
+
+  /** Description of the loader of a specialization. */
+  static String loaderOf(Class<?> spec) {
+    final ClassLoader loader = spec.getClassLoader();
+    if (loader instanceof SpecializingClassLoader) {
+      return ((SpecializingClassLoader) loader).description();
+    }
+    return (spec.isHidden() ? "hidden in " : "") + loader;
+  }
+
+  //----------------------------------------------------------------------
+  @Name("org.seismotech.laespe.Specialization")
+  @Label("Specialization")
+  @Description("A specialization requested to a BoundedSpecializer,"
+      + " from request to completion")
+  @Category(CATEGORY)
+  static final class Specialization extends Event {
+    @Label("Requested Class")
+    String requested;
+
+    @Label("Loader")
+    String loader;
+
+    @Label("Classes Copied")
+    @Description("Classes copied by the loader of the specialization"
+        + " so far")
+    int classesCopied;
+
+    void completed(String requested, Class<?> spec) {
+      if (!shouldCommit()) return;
+      this.requested = requested;
+      this.loader = loaderOf(spec);
+      final ClassLoader specLoader = spec.getClassLoader();
+      this.classesCopied = specLoader instanceof SpecializingClassLoader
+        ? ((SpecializingClassLoader) specLoader).copies() : 1;
+      commit();
+    }
+  }
+
+  @Name("org.seismotech.laespe.ClassCopy")
+  @Label("Class Copy")
+  @Description("A class copied by a SpecializingClassLoader")
+  @Category(CATEGORY)
+  @StackTrace(false)
+  static final class ClassCopy extends Event {
+    @Label("Class")
+    String className;
+
+    @Label("Loader")
+    String loader;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    @Label("Read Time")
+    @Timespan
+    long readTime;
+
+    @Label("Define Time")
+    @Timespan
+    long defineTime;
+
+    void copied(String className, String loader,
+        long size, long readTime, long defineTime) {
+      if (!shouldCommit()) return;
+      this.className = className;
+      this.loader = loader;
+      this.size = size;
+      this.readTime = readTime;
+      this.defineTime = defineTime;
+      commit();
+    }
+  }
+
+  @Name("org.seismotech.laespe.SpecializationFallback")
+  @Label("Specialization Fallback")
+  @Description("A specialization request answered without a new copy,"
+      + " because a SpecializationBudget was exceeded")
+  @Category(CATEGORY)
+  static final class SpecializationFallback extends Event {
+    @Label("Requested Class")
+    String requested;
+
+    @Label("Exceeded Limit")
+    String exceeded;
+
+    @Label("Fallback")
+    String fallback;
+
+    static void fallback(String requested, String exceeded, String fallback) {
+      final SpecializationFallback event = new SpecializationFallback();
+      if (!event.shouldCommit()) return;
+      event.requested = requested;
+      event.exceeded = exceeded;
+      event.fallback = fallback;
+      event.commit();
+    }
+  }
+
+  @Name("org.seismotech.laespe.LoaderUnloaded")
+  @Label("Specializing Loader Unloaded")
+  @Description("A SpecializingClassLoader found unreachable and cleaned,"
+      + " with all its copies")
+  @Category(CATEGORY)
+  @StackTrace(false)
+  static final class LoaderUnloaded extends Event {
+    @Label("Loader")
+    String loader;
+
+    @Label("Classes Copied")
+    int classesCopied;
+
+    static void unloaded(String loader, int classesCopied) {
+      final LoaderUnloaded event = new LoaderUnloaded();
+      if (!event.shouldCommit()) return;
+      event.loader = loader;
+      event.classesCopied = classesCopied;
+      event.commit();
+    }
+  }
+}
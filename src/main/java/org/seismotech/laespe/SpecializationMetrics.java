@@ -0,0 +1,185 @@
+package org.seismotech.laespe;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters of the work done by a {@link SpecializationEngine}
+ * (see {@link BoundedSpecializer#metrics}).
+ *
+ * <p>Counters are {@link LongAdder}s, cheap to update from concurrent
+ * specializations;
+ * reading them is not atomic as a whole.
+ * {@link #snapshot} reads all of them at once into an immutable value.
+ * Metrics can be exposed as a platform MXBean with {@link #register}.
+ *
+ * <p>Collected loaders are detected with a {@link Cleaner},
+ * so they are counted some time after their collection.
+ */
+public class SpecializationMetrics implements SpecializationMetricsMXBean {
+
+  static final Cleaner CLEANER = Cleaner.create();
+
+  private final LongAdder loadersCreated = new LongAdder();
+  private final LongAdder loadersCollected = new LongAdder();
+  private final LongAdder classesCopied = new LongAdder();
+  private final LongAdder classSetHits = new LongAdder();
+  private final LongAdder classSetMisses = new LongAdder();
+  private final LongAdder bytecodeBytesRead = new LongAdder();
+  private final LongAdder defineNanos = new LongAdder();
+  private final LongAdder linkNanos = new LongAdder();
+
+  @Override
+  public long getLoadersCreated() {return loadersCreated.sum();}
+
+  @Override
+  public long getLoadersCollected() {return loadersCollected.sum();}
+
+  @Override
+  public long getLiveLoaders() {
+    final long collected = loadersCollected.sum();
+    return loadersCreated.sum() - collected;
+  }
+
+  @Override
+  public long getClassesCopied() {return classesCopied.sum();}
+
+  @Override
+  public long getClassSetHits() {return classSetHits.sum();}
+
+  @Override
+  public long getClassSetMisses() {return classSetMisses.sum();}
+
+  @Override
+  public long getBytecodeBytesRead() {return bytecodeBytesRead.sum();}
+
+  @Override
+  public long getDefineNanos() {return defineNanos.sum();}
+
+  @Override
+  public long getLinkNanos() {return linkNanos.sum();}
+
+  public Snapshot snapshot() {return new Snapshot(this);}
+
+  /**
+   * Registers these metrics in the platform MBean server,
+   * as {@code org.seismotech.laespe:type=SpecializationMetrics,name=<name>}.
+   */
+  public ObjectName register(String name)
+  throws JMException {
+    final ObjectName objectName = new ObjectName(
+      "org.seismotech.laespe:type=SpecializationMetrics,name="
+      + ObjectName.quote(name));
+    ManagementFactory.getPlatformMBeanServer()
+      .registerMBean(this, objectName);
+    return objectName;
+  }
+
+  public void unregister(ObjectName objectName)
+  throws JMException {
+    ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+  }
+
+  @Override
+  public String toString() {return snapshot().toString();}
+
+  //----------------------------------------------------------------------
+  /**
+   * Counts {@code loader}, and runs {@code onCollected} once it is
+   * collected; {@code onCollected} must not reference {@code loader}.
+   */
+  void loaderCreated(ClassLoader loader, Runnable onCollected) {
+    loadersCreated.increment();
+    CLEANER.register(loader, () -> {
+      loadersCollected.increment();
+      onCollected.run();
+    });
+  }
+
+  void classSetQuery(boolean hit) {
+    (hit ? classSetHits : classSetMisses).increment();
+  }
+
+  void classCopied(long nanos) {
+    classesCopied.increment();
+    defineNanos.add(nanos);
+  }
+
+  void classLinked(long nanos) {
+    linkNanos.add(nanos);
+  }
+
+  /** {@code source}, counting the bytes it serves. */
+  BytecodeSource counting(BytecodeSource source) {
+    return classname -> {
+      final ByteBuffer code = source.bytecode(classname);
+      bytecodeBytesRead.add(code.remaining());
+      return code;
+    };
+  }
+
+  //----------------------------------------------------------------------
+  /** The values of all the counters at some point. */
+  public static final class Snapshot implements SpecializationMetricsMXBean {
+    private final long loadersCreated;
+    private final long loadersCollected;
+    private final long classesCopied;
+    private final long classSetHits;
+    private final long classSetMisses;
+    private final long bytecodeBytesRead;
+    private final long defineNanos;
+    private final long linkNanos;
+
+    Snapshot(SpecializationMetrics metrics) {
+      this.loadersCollected = metrics.getLoadersCollected();
+      this.loadersCreated = metrics.getLoadersCreated();
+      this.classesCopied = metrics.getClassesCopied();
+      this.classSetHits = metrics.getClassSetHits();
+      this.classSetMisses = metrics.getClassSetMisses();
+      this.bytecodeBytesRead = metrics.getBytecodeBytesRead();
+      this.defineNanos = metrics.getDefineNanos();
+      this.linkNanos = metrics.getLinkNanos();
+    }
+
+    @Override
+    public long getLoadersCreated() {return loadersCreated;}
+
+    @Override
+    public long getLoadersCollected() {return loadersCollected;}
+
+    @Override
+    public long getLiveLoaders() {return loadersCreated - loadersCollected;}
+
+    @Override
+    public long getClassesCopied() {return classesCopied;}
+
+    @Override
+    public long getClassSetHits() {return classSetHits;}
+
+    @Override
+    public long getClassSetMisses() {return classSetMisses;}
+
+    @Override
+    public long getBytecodeBytesRead() {return bytecodeBytesRead;}
+
+    @Override
+    public long getDefineNanos() {return defineNanos;}
+
+    @Override
+    public long getLinkNanos() {return linkNanos;}
+
+    @Override
+    public String toString() {
+      return "loaders " + loadersCreated + " created, "
+        + loadersCollected + " collected; "
+        + classesCopied + " classes copied in " + defineNanos + "ns, "
+        + "linked ahead in " + linkNanos + "ns; "
+        + "class set " + classSetHits + " hits, " + classSetMisses
+        + " misses; " + bytecodeBytesRead + " bytecode bytes read";
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package org.seismotech.laespe;
+
+/**
+ * Management interface of {@link SpecializationMetrics}.
+ * Besides the counters, {@link #getLiveLoaders} is the number of
+ * specializing loaders not yet collected,
+ * a good candidate to alert on runaway specialization,
+ * together with the {@code Metaspace} memory pool.
+ */
+public interface SpecializationMetricsMXBean {
+
+  /** Specializing class loaders created. */
+  long getLoadersCreated();
+
+  /** Specializing class loaders collected (and their copies unloaded). */
+  long getLoadersCollected();
+
+  /** Specializing class loaders still alive. */
+  long getLiveLoaders();
+
+  /** Classes copied: defined by specializing loaders or as hidden classes. */
+  long getClassesCopied();
+
+  /** Classes a specializing loader found in its class set, and copied. */
+  long getClassSetHits();
+
+  /** Classes a specializing loader delegated to its parent. */
+  long getClassSetMisses();
+
+  /** Class file bytes read from the underlying {@link BytecodeSource}. */
+  long getBytecodeBytesRead();
+
+  /** Nanoseconds spent defining (and, for hidden classes, linking) copies. */
+  long getDefineNanos();
+
+  /**
+   * Nanoseconds spent linking copies ahead of their first use,
+   * as {@link BoundedSpecializer#specializeAll} does.
+   * Copies linked lazily, on first use, are not timed.
+   */
+  long getLinkNanos();
+}
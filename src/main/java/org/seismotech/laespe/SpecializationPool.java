@@ -0,0 +1,214 @@
+package org.seismotech.laespe;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A memoizing front-end for a {@link BoundedSpecializer}.
+ * Specializations are identified by the original class and a user supplied
+ * key;
+ * requesting the same class with the same key returns the same
+ * specialization.
+ * For instance, {@code pool.specialized(IntSeq.class, 17)} could be
+ * {@code IntSeq} copy for column 17.
+ *
+ * <p>Lookups of live specializations are lock-free,
+ * and they write no shared state unless the policy needs it.
+ * Creation of new specializations is serialized.
+ *
+ * <p>The number of live specializations is bounded by a capacity.
+ * When it is exceeded, a victim is chosen according to the
+ * {@link Eviction} policy, in constant amortized time:
+ * live specializations are kept in a ring, in insertion order,
+ * and the policies are approximated on that ring.
+ * Evicted specializations are only weakly retained:
+ * they are reused if requested again while still reachable
+ * (for instance, because there are live instances),
+ * otherwise they can be unloaded.
+ */
+public class SpecializationPool {
+
+  /** Eviction policy. */
+  public enum Eviction {
+    /**
+     * Least recently used specialization is evicted,
+     * approximated by the clock (second chance) algorithm:
+     * a hit only sets a reference bit, if it is not already set.
+     */
+    LRU,
+    /**
+     * Least frequently used specialization is evicted,
+     * among a sample of {@value #SAMPLE} taken in turn from the ring.
+     */
+    LFU;
+
+    static final int SAMPLE = 8;
+  }
+
+  private final BoundedSpecializer specializer;
+  private final int capacity;
+  private final Eviction eviction;
+  private final ConcurrentMap<Key,Entry> live;
+  private final Map<Key,EvictedRef> evicted;
+  private final ReferenceQueue<Class<?>> collected;
+  /** Keys of the live specializations, guarded by {@code this}. */
+  private final ArrayDeque<Key> ring;
+
+  public SpecializationPool(BoundedSpecializer specializer, int capacity) {
+    this(specializer, capacity, Eviction.LRU);
+  }
+
+  public SpecializationPool(BoundedSpecializer specializer, int capacity,
+      Eviction eviction) {
+    if (capacity <= 0) throw new IllegalArgumentException(
+      "Capacity should be positive: " + capacity);
+    this.specializer = specializer;
+    this.capacity = capacity;
+    this.eviction = eviction;
+    this.live = new ConcurrentHashMap<>();
+    this.evicted = new ConcurrentHashMap<>();
+    this.collected = new ReferenceQueue<>();
+    this.ring = new ArrayDeque<>(capacity);
+  }
+
+  /** Number of live (strongly retained) specializations. */
+  public int size() {return live.size();}
+
+  public Class<?> specialized(Class<?> klass, Object key)
+  throws ClassNotFoundException {
+    final Key k = new Key(klass, key);
+    final Entry entry = live.get(k);
+    if (entry != null) {
+      entry.touch(eviction);
+      return entry.klass;
+    }
+    return miss(k);
+  }
+
+  private synchronized Class<?> miss(Key key)
+  throws ClassNotFoundException {
+    Entry entry = live.get(key);
+    if (entry == null) {
+      purge();
+      final EvictedRef ref = evicted.remove(key);
+      Class<?> klass = ref == null ? null : ref.get();
+      if (klass == null) klass = specializer.specialized(key.klass);
+      entry = new Entry(klass);
+      if (live.size() >= capacity) evict();
+      live.put(key, entry);
+      ring.add(key);
+      if (eviction == Eviction.LFU) entry.uses.increment();
+    } else {
+      entry.touch(eviction);
+    }
+    return entry.klass;
+  }
+
+  private void evict() {
+    final Key victim
+      = eviction == Eviction.LRU ? clockVictim() : sampledVictim();
+    final Entry entry = live.remove(victim);
+    evicted.put(victim, new EvictedRef(victim, entry.klass, collected));
+  }
+
+  /**
+   * The first key in the ring not referenced since it was last passed,
+   * clearing the reference bits and moving to the end the keys passed.
+   * At most one round is needed.
+   */
+  private Key clockVictim() {
+    for (;;) {
+      final Key key = ring.poll();
+      final Entry entry = live.get(key);
+      if (!entry.referenced) return key;
+      entry.referenced = false;
+      ring.add(key);
+    }
+  }
+
+  /** The least used of the first keys in the ring. */
+  private Key sampledVictim() {
+    final int n = Math.min(Eviction.SAMPLE, ring.size());
+    Key victim = null;
+    long victimUses = Long.MAX_VALUE;
+    for (int i = 0; i < n; i++) {
+      final Key key = ring.poll();
+      final long uses = live.get(key).uses.sum();
+      if (uses < victimUses) {
+        if (victim != null) ring.add(victim);
+        victim = key;
+        victimUses = uses;
+      } else {
+        ring.add(key);
+      }
+    }
+    return victim;
+  }
+
+  private void purge() {
+    for (EvictedRef ref; (ref = (EvictedRef) collected.poll()) != null; ) {
+      evicted.remove(ref.key, ref);
+    }
+  }
+
+  //----------------------------------------------------------------------
+  private static class Key {
+    final Class<?> klass;
+    final Object key;
+
+    Key(Class<?> klass, Object key) {
+      this.klass = klass;
+      this.key = key;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Key)) return false;
+      final Key that = (Key) other;
+      return klass == that.klass && Objects.equals(key, that.key);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * klass.hashCode() + Objects.hashCode(key);
+    }
+  }
+
+  private static class Entry {
+    final Class<?> klass;
+    final LongAdder uses;
+    /**
+     * Clock reference bit.
+     * Racy on purpose: a lost update only makes eviction less accurate.
+     */
+    boolean referenced;
+
+    Entry(Class<?> klass) {
+      this.klass = klass;
+      this.uses = new LongAdder();
+    }
+
+    void touch(Eviction eviction) {
+      if (eviction == Eviction.LRU) {
+        if (!referenced) referenced = true;
+      } else {
+        uses.increment();
+      }
+    }
+  }
+
+  private static class EvictedRef extends WeakReference<Class<?>> {
+    final Key key;
+
+    EvictedRef(Key key, Class<?> klass, ReferenceQueue<Class<?>> queue) {
+      super(klass, queue);
+      this.key = key;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package org.seismotech.laespe;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A registry mapping arbitrary keys (tenants, columns, ...)
+ * to their own specialized copy of a hierarchy.
+ *
+ * <p>All the classes requested for a key are specialized in the same
+ * group (see {@link BoundedSpecializer#newGroup}):
+ * they share their copies of the hierarchy, and they don't share anything
+ * with the copies of other keys.
+ * Therefore, the JIT profile of each key is isolated from the others,
+ * no matter what receiver types other keys use.
+ *
+ * <p>Lookups are lock-free.
+ * Concurrent misses on the same key or class are deduplicated,
+ * so that each copy is built only once.
+ * Copies of a key are retained until the key is {@linkplain #remove removed}.
+ */
+public class SpecializationRegistry<K> {
+
+  private final BoundedSpecializer specializer;
+  private final ConcurrentMap<K,Domain> domains;
+
+  public SpecializationRegistry(BoundedSpecializer specializer) {
+    this.specializer = specializer;
+    this.domains = new ConcurrentHashMap<>();
+  }
+
+  /** The specialized copy of {@code klass} for {@code key}. */
+  public Class<?> specialized(K key, Class<?> klass)
+  throws ClassNotFoundException {
+    return domain(key).specialized(klass);
+  }
+
+  /**
+   * A factory for the specialized copy of {@code klass} for {@code key}
+   * (see {@link Instantiation#fastFactory}).
+   * As in {@link BoundedSpecializer#factories}, the factory type is inferred
+   * from the context.
+   */
+  public <F> F factory(K key, Class<?> klass,
+      Class<? super F> factClass, String factMethodName, Class<?>... argTypes)
+  throws ClassNotFoundException, InstantiationRelatedException {
+    @SuppressWarnings("unchecked")
+    final F fact = (F) Instantiation.fastFactory(
+      specialized(key, klass), factClass, factMethodName, argTypes);
+    return fact;
+  }
+
+  public Set<K> keys() {return domains.keySet();}
+
+  /**
+   * Forgets all the copies of {@code key},
+   * so that they can be unloaded when no longer used.
+   */
+  public void remove(K key) {domains.remove(key);}
+
+  private Domain domain(K key) {
+    final Domain domain = domains.get(key);
+    return domain != null ? domain
+      : domains.computeIfAbsent(key, k -> new Domain(specializer.newGroup()));
+  }
+
+  //----------------------------------------------------------------------
+  private static class Domain {
+    final GroupingEngine.Group group;
+    final ConcurrentMap<Class<?>,Class<?>> classes;
+
+    Domain(GroupingEngine.Group group) {
+      this.group = group;
+      this.classes = new ConcurrentHashMap<>();
+    }
+
+    Class<?> specialized(Class<?> klass)
+    throws ClassNotFoundException {
+      final Class<?> spec = classes.get(klass);
+      if (spec != null) return spec;
+      // The group deduplicates concurrent loads of the same class
+      final Class<?> fresh = group.specialize(klass.getName());
+      final Class<?> prev = classes.putIfAbsent(klass, fresh);
+      return prev != null ? prev : fresh;
+    }
+  }
+}
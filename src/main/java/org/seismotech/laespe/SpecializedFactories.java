@@ -0,0 +1,50 @@
+package org.seismotech.laespe;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A family of factories, each one creating instances of a different
+ * specialization of the same class.
+ * See {@link BoundedSpecializer#factories}.
+ *
+ * <p>Factories can be picked explicitly ({@link #get}),
+ * in round-robin order ({@link #next}),
+ * or by key ({@link #forKey}), so that the same key always gets the same
+ * specialization.
+ * Factories are created with {@link Instantiation#fastFactory},
+ * so they have direct {@code new} speed.
+ *
+ * <p>A family owns its specializations: keep it as long as they are needed,
+ * instead of asking again for a new family.
+ */
+public class SpecializedFactories<F> {
+
+  private final List<F> factories;
+  private final AtomicInteger next;
+
+  SpecializedFactories(F[] factories) {
+    this.factories = Collections.unmodifiableList(Arrays.asList(factories));
+    this.next = new AtomicInteger();
+  }
+
+  public int size() {return factories.size();}
+
+  public F get(int i) {return factories.get(i);}
+
+  public List<F> all() {return factories;}
+
+  /** Factories in round-robin order. */
+  public F next() {
+    return factories.get(
+      Math.floorMod(next.getAndIncrement(), factories.size()));
+  }
+
+  /** The factory assigned to {@code key}, based on its hash code. */
+  public F forKey(Object key) {
+    final int h = key.hashCode();
+    return factories.get(Math.floorMod(h ^ (h >>> 16), factories.size()));
+  }
+}
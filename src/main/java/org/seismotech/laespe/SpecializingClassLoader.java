@@ -1,28 +1,72 @@
 package org.seismotech.laespe;
 
-import java.io.IOException;
-import java.net.URL;
-
-import org.seismotech.ground.lang.XClass;
-import org.seismotech.ground.io.XStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 public class SpecializingClassLoader extends ClassLoader {
 
+  static {
+    registerAsParallelCapable();
+  }
+
+  private static final AtomicLong IDS = new AtomicLong();
+
   private final ClassSet toLoad;
+  private final BytecodeSource code;
+  private final SpecializationMetrics metrics;
+  private final String description;
+  private final AtomicInteger copies;
+  private final LongAdder copiedBytes;
 
   public SpecializingClassLoader(final ClassSet toLoad) {
+    this(toLoad, new ResourceBytecodeSource(toLoad.classLoader()));
+  }
+
+  public SpecializingClassLoader(
+      final ClassSet toLoad, final BytecodeSource code) {
+    this(toLoad, code, new SpecializationMetrics());
+  }
+
+  /** A loader reporting its activity to {@code metrics}. */
+  public SpecializingClassLoader(final ClassSet toLoad,
+      final BytecodeSource code, final SpecializationMetrics metrics) {
     super(toLoad.classLoader());
     this.toLoad = toLoad;
+    this.code = code;
+    this.metrics = metrics;
+    final String description
+      = "SpecializingClassLoader#" + IDS.incrementAndGet();
+    final AtomicInteger copies = new AtomicInteger();
+    this.description = description;
+    this.copies = copies;
+    this.copiedBytes = new LongAdder();
+    metrics.loaderCreated(this, () -> SpecializationEvents.LoaderUnloaded
+        .unloaded(description, copies.get()));
   }
 
+  /** Unique description of this loader, for events and diagnostics. */
+  String description() {return description;}
+
+  /** Number of classes copied by this loader. */
+  int copies() {return copies.get();}
+
+  /** Class file bytes copied by this loader. */
+  long copiedBytes() {return copiedBytes.sum();}
+
+  @Override
+  public String toString() {return description;}
+
   @Override
   protected Class<?> loadClass(String name, boolean resolve)
   throws ClassNotFoundException {
     synchronized (getClassLoadingLock(name)) {
       Class<?> klass = findLoadedClass(name);
       if (klass == null) {
-        klass = toLoad.contains(name) ? loadCopy(name)
-          : super.loadClass(name, false);
+        final boolean copy = toLoad.contains(name);
+        metrics.classSetQuery(copy);
+        klass = copy ? loadCopy(name) : super.loadClass(name, false);
       }
       if (resolve) resolveClass(klass);
       //System.err.println(klass.getName() + "@" + klass.hashCode());
@@ -33,17 +77,19 @@ public class SpecializingClassLoader extends ClassLoader {
   private Class<?> loadCopy(String name)
   throws ClassNotFoundException {
     //System.err.println("Loading specialization for " + name);
-    final URL code = getResource(XClass.classResourceName(name));
-    if (code == null) throw new ClassNotFoundException(
-      "Resource for class " + name + " not found");
-    final byte[] bytecode;
-    try {
-      bytecode = XStream.read(code);
-    } catch (IOException e) {
-      throw new ClassNotFoundException("Resource for class " + name
-          + " cannot be read: " + e.getMessage(), e);
-    }
-    final Class<?> klass = defineClass(name, bytecode, 0, bytecode.length);
+    final SpecializationEvents.ClassCopy event
+      = new SpecializationEvents.ClassCopy();
+    event.begin();
+    final long start = System.nanoTime();
+    final ByteBuffer bytecode = code.bytecode(name);
+    final long size = bytecode.remaining();
+    final long read = System.nanoTime();
+    final Class<?> klass = defineClass(name, bytecode, null);
+    final long defined = System.nanoTime();
+    copies.incrementAndGet();
+    copiedBytes.add(size);
+    metrics.classCopied(defined - read);
+    event.copied(name, description, size, read - start, defined - read);
     //System.err.println(klass.getName() + "@" + klass.hashCode());
     return klass;
   }
@@ -0,0 +1,73 @@
+package org.seismotech.laespe;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Represents the superclass chains of some leaf classes up to a root.
+ * Contains each leaf and its superclasses that are strict subtypes of the
+ * root; for instance, with root {@code Seq} and leaf {@code IntSeq},
+ * just {@code IntSeq} and {@code AbsSeq}.
+ *
+ * <p>Compared to {@link HierarchyClassSet} with the same root,
+ * a specialization copies the classes whose code runs on its own
+ * instances, and nothing else:
+ * sibling implementations and helper subtypes of the root that the copied
+ * classes touch (for instance, while verifying them) are shared.
+ * See {@link org.seismotech.laespe.ClassSetMetaspaceBenchmark} for the
+ * metaspace this saves per copy.
+ *
+ * <p>Sharing is only correct if the copied chain doesn't handle siblings
+ * as one of its own ancestors.
+ * A shared sibling extends the original ancestors, not their copies:
+ * code in the chain that casts a sibling to a copied ancestor
+ * (or returns a new sibling where the ancestor type is expected)
+ * fails with a {@link ClassCastException} when run,
+ * or with a {@link VerifyError} when the copy is linked.
+ * Use {@link HierarchyClassSet} for such hierarchies.
+ */
+public class SuperclassChainClassSet implements ClassSet {
+
+  private final ClassLoader clref;
+  private final Set<Class<?>> classes;
+  private final Set<String> names;
+
+  public SuperclassChainClassSet(Class<?> root, Class<?>... leaves) {
+    this(null, root, leaves);
+  }
+
+  public SuperclassChainClassSet(
+      ClassLoader clref, Class<?> root, Class<?>... leaves) {
+    this.clref = clref != null ? clref : root.getClassLoader();
+    this.classes = new HashSet<>();
+    this.names = new HashSet<>();
+    for (final Class<?> leaf: leaves) {
+      if (leaf == root || !root.isAssignableFrom(leaf))
+        throw new IllegalArgumentException(
+          "Class `" + leaf.getName() + "` is not a strict subtype of `"
+          + root.getName() + "`");
+      for (Class<?> c = leaf;
+           c != null && c != root && root.isAssignableFrom(c);
+           c = c.getSuperclass()) {
+        classes.add(c);
+        names.add(c.getName());
+      }
+    }
+  }
+
+  @Override
+  public ClassLoader classLoader() {return clref;}
+
+  @Override
+  public int cost() {return NAME_COST;}
+
+  @Override
+  public boolean contains(Class<?> klass) {
+    return classes.contains(klass);
+  }
+
+  @Override
+  public boolean contains(String classname) {
+    return names.contains(classname);
+  }
+}
@@ -0,0 +1,335 @@
+package org.seismotech.laespe;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import static java.lang.invoke.MethodType.methodType;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Executes a list of actions as a chain of forward calls
+ * (see {@link org.seismotech.laespe.LoopUnrollingBenchmark}),
+ * a poor man full loop unrolling.
+ *
+ * <p>Actions implement a functional interface {@code A}
+ * whose method returns {@code void}.
+ * {@link #executor} returns an {@code A} performing all the actions in
+ * order, with the same arguments.
+ * Each action is called from its own link class
+ * (a hidden class generated on the fly),
+ * and each link calls the next link, also of its own class;
+ * so all the call sites in the chain are monomorphic and inlineable,
+ * even when the actions are a megamorphic mix of classes.
+ *
+ * <p>A long chain is chunked in segments of at most {@code segmentLength}
+ * links, so that the compiler can inline a whole segment
+ * (HotSpot stops inlining at depth {@code MaxInlineLevel}, 15 by default)
+ * and the stack depth stays bounded.
+ * Segments are themselves the actions of an upper level chain,
+ * and so on: the executor is a tree of chains of depth
+ * {@code log(actions)/log(segmentLength)},
+ * where every call site remains monomorphic.
+ *
+ * <p>Link classes are kept by position and reused when the action list
+ * changes: rebuilding an executor only defines new link classes for the
+ * positions whose action class changed, and otherwise just allocates the
+ * links.
+ * Link classes are defined in this library when {@code A} and the types
+ * of its method are public and resolve to the same classes from the
+ * loader of this library;
+ * otherwise, they are defined in the package of {@code A},
+ * which must be open to this library.
+ */
+public class UnrolledChain<A> {
+
+  /**
+   * Default segment length, leaving some inlining depth for the actions
+   * themselves.
+   */
+  public static final int DEFAULT_SEGMENT_LENGTH = 8;
+
+  private final Class<A> actionClass;
+  private final Method method;
+  private final int segmentLength;
+  private final MethodHandles.Lookup lookup;
+  private final List<List<Slot>> levels;
+  private A nop;
+
+  public UnrolledChain(Class<A> actionClass)
+  throws InstantiationRelatedException {
+    this(actionClass, DEFAULT_SEGMENT_LENGTH);
+  }
+
+  public UnrolledChain(Class<A> actionClass, int segmentLength)
+  throws InstantiationRelatedException {
+    if (segmentLength < 2) throw new IllegalArgumentException(
+      "Segment length should be at least 2, not " + segmentLength);
+    this.actionClass = actionClass;
+    this.method = voidFunctionalMethod(actionClass);
+    this.segmentLength = segmentLength;
+    this.lookup = visible(actionClass) && visible(method)
+      ? MethodHandles.lookup()
+      : Instantiation.Metafactory.callerLookup(actionClass);
+    this.levels = new ArrayList<>();
+  }
+
+  public int segmentLength() {return segmentLength;}
+
+  /**
+   * An {@code A} performing {@code actions} in order.
+   * The executor captures the actions at call time;
+   * later changes to {@code actions} require a new executor.
+   */
+  public synchronized A executor(List<? extends A> actions)
+  throws InstantiationRelatedException {
+    if (actions.isEmpty()) return nop();
+    List<? extends A> items = actions;
+    for (int level = 0; ; level++) {
+      if (levels.size() == level) levels.add(new ArrayList<>());
+      final List<A> heads = chains(levels.get(level), items);
+      if (heads.size() == 1) return heads.get(0);
+      items = heads;
+    }
+  }
+
+  /**
+   * Links {@code items} in chains of {@code segmentLength},
+   * returning the head of each chain.
+   */
+  private List<A> chains(List<Slot> slots, List<? extends A> items)
+  throws InstantiationRelatedException {
+    final int n = items.size();
+    final List<A> heads = new ArrayList<>((n - 1) / segmentLength + 1);
+    for (int start = 0; start < n; start += segmentLength) {
+      A next = nop();
+      for (int i = Math.min(start + segmentLength, n) - 1; i >= start; i--) {
+        next = slot(slots, i, items.get(i)).link(items.get(i), next);
+      }
+      heads.add(next);
+    }
+    return heads;
+  }
+
+  private Slot slot(List<Slot> slots, int i, A item)
+  throws InstantiationRelatedException {
+    while (slots.size() <= i) slots.add(null);
+    final Slot slot = slots.get(i);
+    if (slot != null && slot.itemClass == item.getClass()) return slot;
+    final Slot fresh = new Slot(item.getClass(), linkConstructor());
+    slots.set(i, fresh);
+    return fresh;
+  }
+
+  private A nop()
+  throws InstantiationRelatedException {
+    if (nop == null) {
+      final MethodHandle nopConst = define(nopClass(), methodType(void.class));
+      try {
+        nop = actionClass.cast(nopConst.invoke());
+      } catch (Throwable e) {
+        throw new InstantiationRelatedException(
+          "While creating an empty " + actionClass.getName()
+          + ": " + e.getMessage(), e);
+      }
+    }
+    return nop;
+  }
+
+  private MethodHandle linkConstructor()
+  throws InstantiationRelatedException {
+    return define(linkClass(),
+        methodType(void.class, actionClass, actionClass));
+  }
+
+  private MethodHandle define(byte[] bytecode, MethodType ct)
+  throws InstantiationRelatedException {
+    try {
+      final MethodHandles.Lookup hidden
+        = lookup.defineHiddenClass(bytecode, true);
+      return hidden.findConstructor(hidden.lookupClass(), ct);
+    } catch (IllegalAccessException | NoSuchMethodException e) {
+      throw new InstantiationRelatedException(
+        "While defining a chain link for " + actionClass.getName()
+        + ": " + e.getMessage(), e);
+    }
+  }
+
+  private class Slot {
+    final Class<?> itemClass;
+    final MethodHandle linkConst;
+
+    Slot(Class<?> itemClass, MethodHandle linkConst) {
+      this.itemClass = itemClass;
+      this.linkConst = linkConst;
+    }
+
+    A link(A action, A next)
+    throws InstantiationRelatedException {
+      try {
+        return actionClass.cast(linkConst.invoke(action, next));
+      } catch (Throwable e) {
+        throw new InstantiationRelatedException(
+          "While creating a chain link for " + actionClass.getName()
+          + ": " + e.getMessage(), e);
+      }
+    }
+  }
+
+  //----------------------------------------------------------------------
+  private static Method voidFunctionalMethod(Class<?> klass) {
+    if (!klass.isInterface()) throw new IllegalArgumentException(
+      "Class `" + klass.getName() + "` is not an interface");
+    Method method = null;
+    for (final Method cand: klass.getMethods()) {
+      if (!Modifier.isAbstract(cand.getModifiers())
+          || isObjectMethod(cand)) continue;
+      if (method != null) throw new IllegalArgumentException(
+        "Interface `" + klass.getName() + "` has more than one abstract"
+        + " method: " + method + " and " + cand);
+      method = cand;
+    }
+    if (method == null) throw new IllegalArgumentException(
+      "Interface `" + klass.getName() + "` has no abstract method");
+    if (method.getReturnType() != void.class)
+      throw new IllegalArgumentException(
+        "Method " + method + " should return void");
+    return method;
+  }
+
+  /**
+   * Whether code in this library can name the interface declaring
+   * {@code method} and the parameter types of {@code method},
+   * so that link classes can be defined here.
+   * Being public is not enough:
+   * the classes may come from a loader this library cannot see.
+   */
+  private static boolean visible(Method method) {
+    if (!visible(method.getDeclaringClass())) return false;
+    for (final Class<?> param: method.getParameterTypes()) {
+      if (!visible(param)) return false;
+    }
+    return true;
+  }
+
+  private static boolean visible(Class<?> klass) {
+    while (klass.isArray()) klass = klass.getComponentType();
+    if (klass.isPrimitive()) return true;
+    if (!Modifier.isPublic(klass.getModifiers())) return false;
+    try {
+      return Class.forName(klass.getName(), false,
+          UnrolledChain.class.getClassLoader()) == klass;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  private static boolean isObjectMethod(Method method) {
+    try {
+      Object.class.getMethod(method.getName(), method.getParameterTypes());
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  private String className(String simpleName) {
+    final String pkg = lookup.lookupClass().getPackageName();
+    return (pkg.isEmpty() ? "" : pkg.replace('.', '/') + "/") + simpleName;
+  }
+
+  /**
+   * Class file equivalent to
+   * <pre>
+   * final class UnrolledLink implements A {
+   *   private final A action, next;
+   *   UnrolledLink(A action, A next) {this.action = action; this.next = next;}
+   *   public void m(args) {action.m(args); next.m(args);}
+   * }
+   * </pre>
+   */
+  private byte[] linkClass() {
+    final String name = className("UnrolledLink");
+    final String itf = Type.getInternalName(actionClass);
+    final String itfDesc = Type.getDescriptor(actionClass);
+    final String desc = Type.getMethodDescriptor(method);
+    final ClassWriter cw = header(name);
+    cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL,
+        "action", itfDesc, null, null).visitEnd();
+    cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL,
+        "next", itfDesc, null, null).visitEnd();
+
+    MethodVisitor mv = cw.visitMethod(0, "<init>",
+        "(" + itfDesc + itfDesc + ")V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(Opcodes.ALOAD, 0);
+    mv.visitMethodInsn(Opcodes.INVOKESPECIAL,
+        "java/lang/Object", "<init>", "()V", false);
+    mv.visitVarInsn(Opcodes.ALOAD, 0);
+    mv.visitVarInsn(Opcodes.ALOAD, 1);
+    mv.visitFieldInsn(Opcodes.PUTFIELD, name, "action", itfDesc);
+    mv.visitVarInsn(Opcodes.ALOAD, 0);
+    mv.visitVarInsn(Opcodes.ALOAD, 2);
+    mv.visitFieldInsn(Opcodes.PUTFIELD, name, "next", itfDesc);
+    mv.visitInsn(Opcodes.RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    mv = cw.visitMethod(Opcodes.ACC_PUBLIC, method.getName(), desc, null, null);
+    mv.visitCode();
+    for (final String field: new String[] {"action", "next"}) {
+      mv.visitVarInsn(Opcodes.ALOAD, 0);
+      mv.visitFieldInsn(Opcodes.GETFIELD, name, field, itfDesc);
+      int slot = 1;
+      for (final Type arg: Type.getArgumentTypes(desc)) {
+        mv.visitVarInsn(arg.getOpcode(Opcodes.ILOAD), slot);
+        slot += arg.getSize();
+      }
+      mv.visitMethodInsn(Opcodes.INVOKEINTERFACE,
+          itf, method.getName(), desc, true);
+    }
+    mv.visitInsn(Opcodes.RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  /** Class file of an {@code A} doing nothing, closing each chain. */
+  private byte[] nopClass() {
+    final ClassWriter cw = header(className("UnrolledNop"));
+    MethodVisitor mv = cw.visitMethod(0, "<init>", "()V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(Opcodes.ALOAD, 0);
+    mv.visitMethodInsn(Opcodes.INVOKESPECIAL,
+        "java/lang/Object", "<init>", "()V", false);
+    mv.visitInsn(Opcodes.RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+
+    mv = cw.visitMethod(Opcodes.ACC_PUBLIC, method.getName(),
+        Type.getMethodDescriptor(method), null, null);
+    mv.visitCode();
+    mv.visitInsn(Opcodes.RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  private ClassWriter header(String name) {
+    final ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(Opcodes.V11,
+        Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC,
+        name, null, "java/lang/Object",
+        new String[] {Type.getInternalName(actionClass)});
+    return cw;
+  }
+}
@@ -0,0 +1,45 @@
+package org.seismotech.laespe;
+
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.seismotech.laespe.example.widehierarchy.*;
+
+class AdaptiveFactoriesTest {
+
+  @Test
+  void thresholdTest()
+  throws Exception {
+    final AdaptiveFactories<Function<Object,Seq>> adaptive
+      = new AdaptiveFactories<>(
+        new BoundedSpecializer(Seq.class), Function.class, "apply", 3);
+    final Function<Object,Seq> ints
+      = adaptive.factory(IntSeq.class, int[].class);
+    final Function<Object,Seq> longs
+      = adaptive.factory(LongSeq.class, long[].class);
+    final Function<Object,Seq> shorts
+      = adaptive.factory(ShortSeq.class, short[].class);
+
+    assertEquals(IntSeq.class, ints.apply(new int[] {1, 2}).getClass());
+    assertEquals(IntSeq.class, ints.apply(new int[] {1, 2}).getClass());
+    assertEquals(LongSeq.class, longs.apply(new long[] {1, 2}).getClass());
+    assertFalse(adaptive.isSpecialized());
+
+    final Seq xs = shorts.apply(new short[] {1, 2});
+    assertTrue(adaptive.isSpecialized());
+    final Seq ys = ints.apply(new int[] {1, 2});
+    assertEquals(IntSeq.class.getName(), ys.getClass().getName());
+    assertFalse(ys instanceof IntSeq);
+    assertEquals(3, ys.sum());
+    assertFalse(longs.apply(new long[] {1}) instanceof LongSeq);
+    assertEquals(3, xs.sum());
+
+    final Function<Object,Seq> bytes
+      = adaptive.factory(ByteSeq.class, byte[].class);
+    assertFalse(bytes.apply(new byte[] {1}) instanceof ByteSeq);
+  }
+}
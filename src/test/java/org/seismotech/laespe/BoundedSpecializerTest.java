@@ -1,5 +1,18 @@
 package org.seismotech.laespe;
 
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import org.junit.jupiter.api.Test;
@@ -7,6 +20,9 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import org.seismotech.laespe.example.widehierarchy.*;
 
@@ -47,8 +63,9 @@ class BoundedSpecializerTest {
     final Function<int[],Seq> fact1 = Instantiation.fastFactory(
       intSeqClass1, Function.class, "apply", int[].class);
     final Seq xs1 = fact1.apply(new int[] {0, 1, 2, 3, 4});
-    assertFalse(intSeqClass1.isInstance(xs1));
-    assertTrue(xs1 instanceof IntSeq);
+    assertTrue(intSeqClass1.isInstance(xs1));
+    assertFalse(xs1 instanceof IntSeq);
+    assertEquals(10, xs1.sum());
 
     final BoundedSpecializer hisp2
       = new BoundedSpecializer(Instantiation.class, Seq.class);
@@ -58,5 +75,263 @@ class BoundedSpecializerTest {
       intSeqClass2, Function.class, "apply", int[].class);
     final Seq xs2 = fact2.apply(new int[] {0, 1, 2, 3, 4});
     assertTrue(intSeqClass2.isInstance(xs2));
+
+    assertSame(fact2, Instantiation.fastFactory(
+      intSeqClass2, Function.class, "apply", int[].class));
+    assertNotSame(fact2, Instantiation.fastFactory(
+      intSeqClass1, Function.class, "apply", int[].class));
+  }
+
+  @Test
+  void callerLookupTest()
+  throws ClassNotFoundException, InstantiationRelatedException {
+    final Class<?> intSeqClass
+      = new BoundedSpecializer(Seq.class).specialized(IntSeq.class);
+    final Class<?> provider = Instantiation.Metafactory
+      .callerLookup(intSeqClass).lookupClass();
+    assertNotEquals(intSeqClass, provider);
+    assertEquals(intSeqClass.getClassLoader(), provider.getClassLoader());
+    assertFalse(Modifier.isPublic(provider.getModifiers()));
+    assertSame(provider, Instantiation.Metafactory
+        .callerLookup(intSeqClass).lookupClass());
+    assertSame(provider, Instantiation.Metafactory
+        .callerLookup(intSeqClass.getSuperclass()).lookupClass());
+  }
+
+  @Test
+  void sharedBytecodeTest()
+  throws ClassNotFoundException {
+    final Map<String,Integer> reads = new ConcurrentHashMap<>();
+    final BytecodeSource resources
+      = new ResourceBytecodeSource(Seq.class.getClassLoader());
+    final BoundedSpecializer hisp = new BoundedSpecializer(
+      new HierarchyClassSet(Seq.class),
+      classname -> {
+        reads.merge(classname, 1, Integer::sum);
+        return resources.bytecode(classname);
+      });
+
+    final Class<?> intSeqClass1 = hisp.specialized(IntSeq.class);
+    final Class<?> intSeqClass2 = hisp.specialized(IntSeq.class);
+    assertNotEquals(intSeqClass1, intSeqClass2);
+    assertNotEquals(intSeqClass1.getSuperclass(), intSeqClass2.getSuperclass());
+    assertEquals(1, (int) reads.get(IntSeq.class.getName()));
+    assertEquals(1, (int) reads.get(AbsSeq.class.getName()));
+  }
+
+  @Test
+  void hiddenClassEngineTest()
+  throws Exception {
+    final BoundedSpecializer hisp = new BoundedSpecializer(
+      new HiddenClassEngine(new HierarchyClassSet(Seq.class)));
+
+    final Class<?> intSeqClass1 = hisp.specialized(IntSeq.class);
+    final Class<?> intSeqClass2 = hisp.specialized(IntSeq.class);
+    assertTrue(intSeqClass1.isHidden());
+    assertNotEquals(intSeqClass1, intSeqClass2);
+    assertEquals(AbsSeq.class, intSeqClass1.getSuperclass());
+    assertEquals(intSeqClass1, intSeqClass1.getDeclaredMethod("sum")
+        .getDeclaringClass());
+
+    final Seq xs = (Seq) intSeqClass1.getConstructor(int[].class)
+      .newInstance(new int[] {0, 1, 2, 3, 4});
+    assertEquals(10, xs.sum());
+    @SuppressWarnings("unchecked")
+    final Function<int[],Seq> fact = Instantiation.fastFactory(
+      intSeqClass2, Function.class, "apply", int[].class);
+    final Seq ys = fact.apply(new int[] {5, 6});
+    assertTrue(intSeqClass2.isInstance(ys));
+    assertEquals(11, ys.sum());
+
+    assertThrows(UnsupportedOperationException.class,
+        () -> hisp.specializedGroup(IntSeq.class, LongSeq.class));
+    assertThrows(UnsupportedOperationException.class,
+        () -> hisp.specialized(IntSeq.class, Map.of("length", 2)));
+  }
+
+  /**
+   * Specializes hidden copies of a class of another module, that lack full
+   * privilege access, checking that nothing but the copies is defined.
+   */
+  @Test
+  void hiddenClassLookupTest()
+  throws Exception {
+    final Class<?> original
+      = new BoundedSpecializer(Seq.class).specialized(IntSeq.class);
+    final BoundedSpecializer hisp = new BoundedSpecializer(
+      new HiddenClassEngine(
+        new HierarchyClassSet(original.getClassLoader(), Seq.class)));
+    final List<Class<?>> copies = new ArrayList<>();
+    for (int i = 0; i < 5; i++) copies.add(hisp.specialized(original));
+
+    final int n = 50;
+    final ClassLoadingMXBean loading
+      = ManagementFactory.getClassLoadingMXBean();
+    final long loaded = loading.getTotalLoadedClassCount();
+    for (int i = 0; i < n; i++) copies.add(hisp.specialized(original));
+    final long defined = loading.getTotalLoadedClassCount() - loaded;
+    assertTrue(n <= defined && defined < n + n / 2,
+        "Defined " + defined + " classes for " + n + " copies");
+  }
+
+  @Test
+  void bulkSpecializationTest()
+  throws Exception {
+    final BoundedSpecializer hisp = new BoundedSpecializer(Seq.class);
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    final Map<Class<?>,List<Class<?>>> specs;
+    try {
+      specs = hisp.specializeAll(
+        List.of(IntSeq.class, LongSeq.class), 8, executor);
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(List.of(IntSeq.class, LongSeq.class),
+        List.copyOf(specs.keySet()));
+    final Set<Class<?>> supers = new HashSet<>();
+    for (final Map.Entry<Class<?>,List<Class<?>>> entry: specs.entrySet()) {
+      assertEquals(8, entry.getValue().size());
+      for (final Class<?> spec: entry.getValue()) {
+        assertEquals(entry.getKey().getName(), spec.getName());
+        assertNotEquals(entry.getKey(), spec);
+        supers.add(spec.getSuperclass());
+      }
+    }
+    assertEquals(16, supers.size());
+
+    final Class<?> initCounting = hisp.specializeAll(
+      List.of(InitCountingSeq.class), 2).get(InitCountingSeq.class).get(0);
+    assertEquals(0, Inits.COUNT.get());
+    initCounting.getConstructor().newInstance();
+    assertEquals(1, Inits.COUNT.get());
+  }
+
+  /**
+   * Counts its initializations in a class outside the class set,
+   * shared by all its copies.
+   */
+  public static class InitCountingSeq extends AbsSeq {
+    static {Inits.COUNT.incrementAndGet();}
+
+    @Override public int length() {return 0;}
+    @Override public long get(int i) {return 0;}
+  }
+
+  @Test
+  void groupSpecializationTest()
+  throws ClassNotFoundException {
+    final BoundedSpecializer hisp = new BoundedSpecializer(Seq.class);
+    final Class<?>[] group
+      = hisp.specializedGroup(IntSeq.class, LongSeq.class);
+    assertEquals(IntSeq.class.getName(), group[0].getName());
+    assertEquals(LongSeq.class.getName(), group[1].getName());
+    assertNotEquals(IntSeq.class, group[0]);
+    assertNotEquals(AbsSeq.class, group[0].getSuperclass());
+    assertEquals(group[0].getSuperclass(), group[1].getSuperclass());
+    assertEquals(group[0].getClassLoader(), group[1].getClassLoader());
+
+    final Class<?>[] other = hisp.specializedGroup(IntSeq.class);
+    assertNotEquals(group[0].getSuperclass(), other[0].getSuperclass());
+  }
+
+  @Test
+  void factoriesTest()
+  throws ClassNotFoundException, InstantiationRelatedException {
+    final BoundedSpecializer hisp = new BoundedSpecializer(Seq.class);
+    final SpecializedFactories<Function<int[],Seq>> facts
+      = hisp.factories(IntSeq.class, 3, Function.class, "apply", int[].class);
+    assertEquals(3, facts.size());
+    assertThrows(IllegalArgumentException.class, () -> hisp.factories(
+        IntSeq.class, 0, Function.class, "apply", int[].class));
+    assertThrows(IllegalArgumentException.class, () -> hisp.factories(
+        IntSeq.class, -1, Function.class, "apply", int[].class));
+    final Set<Class<?>> classes = new HashSet<>();
+    for (int i = 0; i < 3; i++) {
+      final Seq xs = facts.next().apply(new int[] {1, 2});
+      assertEquals(3, xs.sum());
+      classes.add(xs.getClass());
+    }
+    assertEquals(3, classes.size());
+    assertFalse(classes.contains(IntSeq.class));
+    assertSame(facts.get(0), facts.next());
+    assertSame(facts.forKey("column 17"), facts.forKey("column 17"));
+  }
+
+  @Test
+  void constantBindingTest()
+  throws Exception {
+    final BoundedSpecializer hisp = new BoundedSpecializer(Seq.class);
+    final Class<?> scaledClass
+      = hisp.specialized(ScaledIntSeq.class, Map.of("scale", 3));
+    assertNotEquals(ScaledIntSeq.class, scaledClass);
+    final Field scale = scaledClass.getDeclaredField("scale");
+    assertTrue(Modifier.isStatic(scale.getModifiers()));
+    scale.setAccessible(true);
+    assertEquals(3, scale.getInt(null));
+
+    final Seq xs = (Seq) scaledClass.getConstructor(int[].class, int.class)
+      .newInstance(new int[] {1, 2, 3}, 1);
+    assertEquals(18, xs.sum());
+    assertEquals(6, new ScaledIntSeq(new int[] {1, 2, 3}, 1).sum());
+
+    assertThrows(IllegalArgumentException.class,
+        () -> hisp.specialized(ScaledIntSeq.class, Map.of("scale", 3L)));
+    assertThrows(IllegalArgumentException.class,
+        () -> hisp.specialized(ScaledIntSeq.class, Map.of("stride", 3)));
+
+    final BoundedSpecializer offsetsp = new BoundedSpecializer(
+      new NameClassSet(Seq.class.getClassLoader(),
+          OffsetIntSeq.class.getName()));
+    assertThrows(IllegalArgumentException.class,
+        () -> offsetsp.specialized(OffsetIntSeq.class, Map.of("scale", 3)));
+    final Seq ys = (Seq) offsetsp
+      .specialized(OffsetIntSeq.class, Map.of("offset", 1))
+      .getConstructor(int[].class, int.class, int.class)
+      .newInstance(new int[] {1, 2, 3}, 2, 0);
+    assertEquals(15, ys.sum());
+  }
+
+  public static class Inits {
+    public static final AtomicInteger COUNT = new AtomicInteger();
+  }
+
+  /** Inherits field {@code scale} from a class outside its class sets. */
+  public static class OffsetIntSeq extends ScaledIntSeq {
+    private final int offset;
+
+    public OffsetIntSeq(int[] xs, int scale, int offset) {
+      super(xs, scale);
+      this.offset = offset;
+    }
+
+    @Override public long get(int i) {return super.get(i) + offset;}
+  }
+
+  @Test
+  void devirtualizationTest()
+  throws Exception {
+    final BoundedSpecializer hisp = new BoundedSpecializer(
+        LoaderEngine.devirtualizing(new HierarchyClassSet(Seq.class),
+            new ResourceBytecodeSource(Seq.class.getClassLoader())));
+    final Class<?> intSeqClass = hisp.specialized(IntSeq.class);
+    int bridges = 0;
+    for (final java.lang.reflect.Method m: intSeqClass.getDeclaredMethods()) {
+      if (m.getName().startsWith("laespe$")) bridges++;
+    }
+    assertEquals(2, bridges);
+
+    final Seq xs = (Seq) intSeqClass.getConstructor(int[].class)
+      .newInstance(new int[] {0, 1, 2, 3, 4});
+    assertEquals(10, xs.sum());
+    assertEquals(10, new IntSeq(new int[] {0, 1, 2, 3, 4}).sum());
+
+    final Class<?> scaledClass = hisp.specialized(ScaledIntSeq.class);
+    final Class<?> offsetClass = scaledClass.getClassLoader()
+      .loadClass(OffsetIntSeq.class.getName());
+    assertEquals(scaledClass, offsetClass.getSuperclass());
+    final Seq ys = (Seq) offsetClass
+      .getConstructor(int[].class, int.class, int.class)
+      .newInstance(new int[] {1, 2, 3}, 1, 1);
+    assertEquals(9, ys.sum());
   }
 }
@@ -0,0 +1,227 @@
+package org.seismotech.laespe;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.seismotech.laespe.example.widehierarchy.*;
+
+class ClassSetTest {
+
+  static final String PKG = Seq.class.getPackageName() + ".";
+
+  /** Delegates to the application loader, recording loaded classes. */
+  static class RecordingLoader extends ClassLoader {
+    final Set<String> loaded = ConcurrentHashMap.newKeySet();
+
+    RecordingLoader() {super(Seq.class.getClassLoader());}
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve)
+    throws ClassNotFoundException {
+      loaded.add(name);
+      return super.loadClass(name, resolve);
+    }
+  }
+
+  @Test
+  void bytecodeHierarchyTest()
+  throws ClassNotFoundException {
+    final RecordingLoader clref = new RecordingLoader();
+    final ClassSet set = new BytecodeHierarchyClassSet(clref, Seq.class);
+    assertFalse(set.contains(PKG + "Seq"));
+    assertTrue(set.contains(PKG + "AbsSeq"));
+    assertTrue(set.contains(PKG + "ByteSeq"));
+    assertTrue(set.contains(PKG + "ByteSeq"));
+    assertFalse(set.contains("java.lang.String"));
+    assertFalse(set.contains(PKG + "NoSeq"));
+    assertEquals(Set.of(), clref.loaded);
+
+    final Class<?> intSeqClass
+      = new BoundedSpecializer(new BytecodeHierarchyClassSet(Seq.class))
+      .specialized(IntSeq.class);
+    assertNotEquals(IntSeq.class, intSeqClass);
+    assertNotEquals(AbsSeq.class, intSeqClass.getSuperclass());
+  }
+
+  @Test
+  void superclassChainTest()
+  throws Exception {
+    final ClassSet set = new SuperclassChainClassSet(Seq.class, IntSeq.class);
+    assertTrue(set.contains(IntSeq.class));
+    assertTrue(set.contains(PKG + "AbsSeq"));
+    assertFalse(set.contains(Seq.class));
+    assertFalse(set.contains(LongSeq.class));
+    assertFalse(set.contains(PKG + "LongSeq"));
+
+    final Class<?> intSeqClass
+      = new BoundedSpecializer(set).specialized(IntSeq.class);
+    assertNotEquals(IntSeq.class, intSeqClass);
+    assertNotEquals(AbsSeq.class, intSeqClass.getSuperclass());
+    assertEquals(Seq.class, intSeqClass.getInterfaces()[0]);
+
+    // A shared sibling doesn't extend the copied ancestor
+    final Class<?> chainCopy = new BoundedSpecializer(
+      new SuperclassChainClassSet(Seq.class, SiblingAsAncestorSeq.class))
+      .specialized(SiblingAsAncestorSeq.class);
+    final Object chainSeq = chainCopy.getConstructor(int[].class)
+      .newInstance(new int[] {1});
+    final InvocationTargetException e = assertThrows(
+      InvocationTargetException.class,
+      () -> chainCopy.getMethod("sibling").invoke(chainSeq));
+    assertTrue(e.getCause() instanceof ClassCastException);
+    final Class<?> hierarchyCopy = new BoundedSpecializer(Seq.class)
+      .specialized(SiblingAsAncestorSeq.class);
+    final Object hierarchySeq = hierarchyCopy.getConstructor(int[].class)
+      .newInstance(new int[] {1});
+    assertEquals(1L,
+        ((Seq) hierarchyCopy.getMethod("sibling").invoke(hierarchySeq)).sum());
+  }
+
+  /** Handles a sibling implementation as its own ancestor type. */
+  public static class SiblingAsAncestorSeq extends IntSeq {
+    public SiblingAsAncestorSeq(int[] xs) {super(xs);}
+
+    public AbsSeq sibling() {
+      final Seq sibling = new ByteSeq(new byte[] {1});
+      return (AbsSeq) sibling;
+    }
+  }
+
+  @Test
+  void nameTest() {
+    final RecordingLoader clref = new RecordingLoader();
+    final ClassSet set = new NameClassSet(clref,
+      List.of("org.seismotech.**", "java.util.*", "java.lang.String",
+          PKG + "*Seq$?"),
+      List.of(Pattern.compile("com\\.example\\.[A-Z]\\w*Seq")));
+    assertTrue(set.contains(PKG + "AbsSeq"));
+    assertTrue(set.contains("java.util.List"));
+    assertTrue(set.contains("java.util.Map$Entry"));
+    assertFalse(set.contains("java.util.concurrent.ConcurrentMap"));
+    assertTrue(set.contains("java.lang.String"));
+    assertFalse(set.contains("java.lang.StringBuilder"));
+    assertFalse(set.contains("java.lang.Strin"));
+    assertTrue(set.contains("com.example.IntSeq"));
+    assertFalse(set.contains("com.example.intSeq"));
+    assertFalse(set.contains("javax.Foo"));
+    assertEquals(Set.of(), clref.loaded);
+
+    final ClassSet glob = new NameClassSet(clref, PKG + "*Seq$?");
+    assertTrue(glob.contains(PKG + "IntSeq$1"));
+    assertFalse(glob.contains(PKG + "IntSeq"));
+    assertFalse(glob.contains(PKG + "x.IntSeq$1"));
+    assertEquals("com.example.",
+        NameClassSet.literalPrefix("com\\.example\\."));
+    assertEquals("com.example", NameClassSet.literalPrefix("^com\\.examples?"));
+    assertEquals("", NameClassSet.literalPrefix("a|b"));
+    assertEquals("", NameClassSet.literalPrefix(
+        Pattern.compile("com\\.example\\.", Pattern.CASE_INSENSITIVE)));
+
+    final ClassSet caseless = new NameClassSet(clref, List.of(),
+      List.of(Pattern.compile("com\\.example\\.\\w+",
+          Pattern.CASE_INSENSITIVE)));
+    assertTrue(caseless.contains("COM.Example.IntSeq"));
+    assertTrue(caseless.contains("com.example.IntSeq"));
+  }
+
+  @Test
+  void compositeTest()
+  throws ClassNotFoundException {
+    final ClassLoader clref = Seq.class.getClassLoader();
+    final ClassSet set = ClassSet.difference(
+      ClassSet.intersection(new HierarchyClassSet(Seq.class),
+          new NameClassSet(clref, PKG + "*")),
+      ClassSet.union(new NameClassSet(clref, PKG + "Long*"),
+          new NameClassSet(clref, PKG + "Short*")));
+    assertEquals(ClassSet.LOADING_COST, set.cost());
+    assertTrue(set.contains(IntSeq.class));
+    assertTrue(set.contains(PKG + "AbsSeq"));
+    assertFalse(set.contains(LongSeq.class));
+    assertFalse(set.contains(PKG + "ShortSeq"));
+    assertFalse(set.contains(Seq.class));
+    assertFalse(set.contains("java.lang.String"));
+
+    final Class<?> intSeqClass
+      = new BoundedSpecializer(set).specialized(IntSeq.class);
+    assertNotEquals(IntSeq.class, intSeqClass);
+    assertNotEquals(AbsSeq.class, intSeqClass.getSuperclass());
+  }
+
+  @Test
+  void manifestTest()
+  throws Exception {
+    final RecordingLoader clref = new RecordingLoader();
+    final ManifestClassSet set = new ManifestClassSet(clref, PKG + "Seq");
+    assertEquals(Set.of(), clref.loaded);
+    assertEquals(9, set.size());
+    assertTrue(set.contains(BoundedSpecializerTest.OffsetIntSeq.class));
+    assertTrue(set.contains(PKG + "AbsSeq"));
+    assertTrue(set.contains(PKG + "ScaledIntSeq"));
+    assertFalse(set.contains(PKG + "Seq"));
+    assertFalse(set.contains("java.lang.String"));
+    assertThrows(IllegalArgumentException.class,
+        () -> new ManifestClassSet(clref, "java.lang.Runnable"));
+
+    final Class<?> intSeqClass
+      = new BoundedSpecializer(new ManifestClassSet(Seq.class))
+      .specialized(IntSeq.class);
+    assertNotEquals(IntSeq.class, intSeqClass);
+    assertNotEquals(AbsSeq.class, intSeqClass.getSuperclass());
+  }
+
+  @Test
+  void perfectHashTest() {
+    final List<String> names = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) names.add("org.example.C" + i);
+    names.add("Aa");
+    names.add("BB");
+    final PerfectHashNames set = new PerfectHashNames(names);
+    assertEquals(names.size(), set.size());
+    for (final String name: names) assertTrue(set.contains(name));
+    assertFalse(set.contains("org.example.C10000"));
+    assertFalse(set.contains("AaAa"));
+    assertFalse(new PerfectHashNames(List.of()).contains(""));
+  }
+
+  @Test
+  void cachingTest()
+  throws ClassNotFoundException {
+    final Set<String> asked = ConcurrentHashMap.newKeySet();
+    final ClassSet hierarchy = new HierarchyClassSet(Seq.class);
+    final ClassSet set = new CachingClassSet(new ClassSet() {
+      @Override
+      public ClassLoader classLoader() {return hierarchy.classLoader();}
+      @Override
+      public boolean contains(Class<?> klass) {
+        asked.add(klass.getName());
+        return hierarchy.contains(klass);
+      }
+      @Override
+      public boolean contains(String classname) {
+        asked.add(classname);
+        return hierarchy.contains(classname);
+      }
+    });
+    final BoundedSpecializer hisp = new BoundedSpecializer(set);
+    hisp.specialized(IntSeq.class);
+    final Set<String> first = Set.copyOf(asked);
+    asked.clear();
+    hisp.specialized(IntSeq.class);
+    assertEquals(Set.of(), asked);
+    assertTrue(first.contains(AbsSeq.class.getName()));
+    assertTrue(set.contains(PKG + "AbsSeq"));
+    assertFalse(set.contains(PKG + "NoSeq"));
+    assertFalse(set.contains(PKG + "NoSeq"));
+  }
+}
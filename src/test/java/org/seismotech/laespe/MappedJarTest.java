@@ -0,0 +1,125 @@
+package org.seismotech.laespe;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.seismotech.laespe.example.widehierarchy.*;
+
+class MappedJarTest {
+
+  @Test
+  void storedAndDeflatedEntriesTest()
+  throws Exception {
+    final byte[] intSeq = classFile(IntSeq.class);
+    final byte[] absSeq = classFile(AbsSeq.class);
+    final Path jar = Files.createTempFile("laespe", ".jar");
+    jar.toFile().deleteOnExit();
+    try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+      stored(out, resource(IntSeq.class), intSeq);
+      deflated(out, resource(AbsSeq.class), absSeq);
+    }
+
+    final MappedJar mjar = new MappedJar(jar);
+    assertNull(mjar.entry(resource(LongSeq.class)));
+    final ByteBuffer intSeqCode = mjar.bytecode(IntSeq.class.getName());
+    assertTrue(intSeqCode.isDirect());
+    assertArrayEquals(intSeq, bytes(intSeqCode));
+    final ByteBuffer absSeqCode = mjar.bytecode(AbsSeq.class.getName());
+    assertTrue(absSeqCode.isDirect());
+    assertArrayEquals(absSeq, bytes(absSeqCode));
+    assertArrayEquals(absSeq, bytes(mjar.bytecode(AbsSeq.class.getName())));
+
+    final BoundedSpecializer hisp = new BoundedSpecializer(
+      new HierarchyClassSet(Seq.class),
+      new ClasspathBytecodeSource(Arrays.asList(jar)));
+    final Class<?> intSeqClass = hisp.specialized(IntSeq.class);
+    assertNotEquals(IntSeq.class, intSeqClass);
+    assertNotEquals(AbsSeq.class, intSeqClass.getSuperclass());
+    assertEquals(AbsSeq.class.getName(), intSeqClass.getSuperclass().getName());
+  }
+
+  @Test
+  void nestedJarTest()
+  throws Exception {
+    final byte[] intSeq = classFile(IntSeq.class);
+    final ByteArrayOutputStream inner = new ByteArrayOutputStream();
+    try (ZipOutputStream out = new ZipOutputStream(inner)) {
+      stored(out, resource(IntSeq.class), intSeq);
+      deflated(out, resource(AbsSeq.class), classFile(AbsSeq.class));
+    }
+    final Path jar = Files.createTempFile("laespe", ".jar");
+    jar.toFile().deleteOnExit();
+    try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+      stored(out, "lib/seq.jar", inner.toByteArray());
+      deflated(out, "lib/deflated.jar", inner.toByteArray());
+    }
+
+    final MappedJar nested = new MappedJar(jar).nested("lib/seq.jar");
+    assertEquals(jar + "!/lib/seq.jar", nested.name());
+    assertArrayEquals(intSeq, bytes(nested.bytecode(IntSeq.class.getName())));
+    assertThrows(IOException.class,
+        () -> new MappedJar(jar).nested("lib/deflated.jar"));
+
+    final BoundedSpecializer hisp = new BoundedSpecializer(
+      new HierarchyClassSet(Seq.class),
+      new ClasspathBytecodeSource(Arrays.asList(
+          Paths.get(jar + "!/lib/missing.jar"),
+          Paths.get(jar + "!/lib/seq.jar"))));
+    final Class<?> intSeqClass = hisp.specialized(IntSeq.class);
+    assertNotEquals(IntSeq.class, intSeqClass);
+    assertEquals(AbsSeq.class.getName(), intSeqClass.getSuperclass().getName());
+  }
+
+  private static String resource(Class<?> klass) {
+    return klass.getName().replace('.', '/') + ".class";
+  }
+
+  private static byte[] classFile(Class<?> klass)
+  throws IOException {
+    return klass.getClassLoader().getResourceAsStream(resource(klass))
+      .readAllBytes();
+  }
+
+  private static byte[] bytes(ByteBuffer buffer) {
+    final byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  private static void stored(ZipOutputStream out, String name, byte[] content)
+  throws IOException {
+    final ZipEntry entry = new ZipEntry(name);
+    entry.setMethod(ZipEntry.STORED);
+    entry.setSize(content.length);
+    final CRC32 crc = new CRC32();
+    crc.update(content);
+    entry.setCrc(crc.getValue());
+    out.putNextEntry(entry);
+    out.write(content);
+    out.closeEntry();
+  }
+
+  private static void deflated(ZipOutputStream out, String name, byte[] content)
+  throws IOException {
+    out.putNextEntry(new ZipEntry(name));
+    out.write(content);
+    out.closeEntry();
+  }
+}
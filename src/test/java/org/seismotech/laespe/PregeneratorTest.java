@@ -0,0 +1,52 @@
+package org.seismotech.laespe;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.seismotech.laespe.example.widehierarchy.*;
+
+class PregeneratorTest {
+
+  @Test
+  void pregenerationTest()
+  throws Exception {
+    final Pregenerator generator
+      = new Pregenerator(new HierarchyClassSet(Seq.class));
+    final List<String> names = generator.generate(IntSeq.class, 2);
+    assertEquals(2, names.size());
+    assertNotEquals(names.get(0), names.get(1));
+    generator.generate(LongSeq.class, 1);
+    final Path dir = Files.createTempDirectory("laespe");
+    generator.write(dir);
+
+    try (final URLClassLoader loader = new URLClassLoader(
+             new URL[] {dir.toUri().toURL()}, Seq.class.getClassLoader())) {
+      final PregeneratedSpecializations pregen
+        = new PregeneratedSpecializations(loader);
+      assertEquals(2, pregen.copies(IntSeq.class));
+      assertEquals(1, pregen.copies(LongSeq.class));
+      assertEquals(0, pregen.copies(ByteSeq.class));
+
+      final List<Class<?>> specs = pregen.specializations(IntSeq.class);
+      assertEquals(names.get(0), specs.get(0).getName());
+      assertTrue(Seq.class.isAssignableFrom(specs.get(0)));
+      assertNotEquals(AbsSeq.class, specs.get(0).getSuperclass());
+      assertNotEquals(specs.get(0).getSuperclass(),
+          specs.get(1).getSuperclass());
+      assertNotEquals(specs.get(0).getSuperclass(),
+          pregen.specialized(LongSeq.class, 0).getSuperclass());
+
+      final Seq xs = (Seq) specs.get(1).getConstructor(int[].class)
+        .newInstance(new int[] {1, 2, 3});
+      assertEquals(6, xs.sum());
+    }
+  }
+}
@@ -0,0 +1,135 @@
+package org.seismotech.laespe;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.seismotech.laespe.example.widehierarchy.*;
+
+class SpecializationBudgetTest {
+
+  @Test
+  void sharedFallbackTest()
+  throws Exception {
+    final SpecializationBudget budget = new SpecializationBudget(
+      2, Long.MAX_VALUE, 1, SpecializationBudget.Fallback.SHARED);
+    final BoundedSpecializer hisp = new BoundedSpecializer(
+      new LoaderEngine(new HierarchyClassSet(Seq.class)), budget);
+    final Class<?> a = hisp.specialized(IntSeq.class);
+    final Class<?> b = hisp.specialized(IntSeq.class);
+    assertNotSame(IntSeq.class, a);
+    assertNotSame(a, b);
+    assertEquals(2, budget.liveCopies());
+    assertTrue(budget.copiedBytes() > 0);
+
+    assertSame(IntSeq.class, hisp.specialized(IntSeq.class));
+    assertEquals(1, budget.sharedFallbacks());
+    assertEquals(0, budget.lruFallbacks());
+  }
+
+  @Test
+  void lruFallbackTest()
+  throws Exception {
+    final SpecializationBudget budget = new SpecializationBudget(
+      2, Long.MAX_VALUE, 1, SpecializationBudget.Fallback.LRU);
+    final BoundedSpecializer hisp = new BoundedSpecializer(
+      new LoaderEngine(new HierarchyClassSet(Seq.class)), budget);
+    final Class<?> a = hisp.specialized(IntSeq.class);
+    final Class<?> b = hisp.specialized(IntSeq.class);
+    assertSame(a, hisp.specialized(IntSeq.class));
+    assertSame(b, hisp.specialized(IntSeq.class));
+    assertSame(LongSeq.class, hisp.specialized(LongSeq.class));
+    assertEquals(2, budget.lruFallbacks());
+    assertEquals(1, budget.sharedFallbacks());
+  }
+
+  @Test
+  void lruLoadersTest()
+  throws Exception {
+    final SpecializationBudget budget = new SpecializationBudget(
+      1, Long.MAX_VALUE, 1, SpecializationBudget.Fallback.LRU);
+    final Class<?> a = new BoundedSpecializer(
+      new LoaderEngine(new HierarchyClassSet(Seq.class)), budget)
+      .specialized(IntSeq.class);
+    final ClassLoader other
+      = new BoundedSpecializer(Seq.class).specialized(IntSeq.class)
+      .getClassLoader();
+    final BoundedSpecializer otherSp = new BoundedSpecializer(
+      new LoaderEngine(new HierarchyClassSet(other, Seq.class)), budget);
+    final Class<?> otherIntSeq = other.loadClass(IntSeq.class.getName());
+    assertSame(otherIntSeq, otherSp.specialized(otherIntSeq));
+    assertEquals(1, budget.sharedFallbacks());
+    assertEquals(0, budget.lruFallbacks());
+    assertNotSame(a, otherIntSeq);
+  }
+
+  @Test
+  void copiedBytesTest()
+  throws Exception {
+    final SpecializationBudget probe = new SpecializationBudget(
+      1, Long.MAX_VALUE, 1, SpecializationBudget.Fallback.SHARED);
+    new BoundedSpecializer(
+      new LoaderEngine(new HierarchyClassSet(Seq.class)), probe)
+      .specialized(ScaledIntSeq.class);
+    final long eager = probe.copiedBytes();
+    assertTrue(eager > 0);
+
+    final SpecializationBudget budget = new SpecializationBudget(
+      Integer.MAX_VALUE, eager + 1, 1, SpecializationBudget.Fallback.SHARED);
+    final BoundedSpecializer hisp = new BoundedSpecializer(
+      new LoaderEngine(new HierarchyClassSet(Seq.class)), budget);
+    final Class<?> a = hisp.specialized(ScaledIntSeq.class);
+    assertEquals(eager, budget.copiedBytes());
+    a.getClassLoader()
+      .loadClass(BoundedSpecializerTest.OffsetIntSeq.class.getName());
+    assertTrue(budget.copiedBytes() > eager);
+    assertSame(ScaledIntSeq.class, hisp.specialized(ScaledIntSeq.class));
+    assertEquals(1, budget.sharedFallbacks());
+  }
+
+  @Test
+  void releaseTest()
+  throws Exception {
+    final SpecializationBudget budget = new SpecializationBudget(
+      1, Long.MAX_VALUE, 1, SpecializationBudget.Fallback.SHARED);
+    final BoundedSpecializer hisp = new BoundedSpecializer(
+      new LoaderEngine(new HierarchyClassSet(Seq.class)), budget);
+    final Specialization spec = hisp.specialization(IntSeq.class);
+    assertNotSame(IntSeq.class, spec.specializedClass());
+    assertSame(IntSeq.class, hisp.specialized(IntSeq.class));
+    assertEquals(1, budget.liveCopies());
+
+    spec.close();
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while ((budget.liveCopies() > 0 || !spec.unloaded().isDone())
+           && System.nanoTime() < deadline) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    spec.unloaded().get(1, TimeUnit.SECONDS);
+    assertEquals(0, budget.liveCopies());
+    assertEquals(0, budget.copiedBytes());
+    assertNotSame(IntSeq.class, hisp.specialized(IntSeq.class));
+  }
+
+  @Test
+  void validationTest() {
+    final SpecializationBudget.Fallback shared
+      = SpecializationBudget.Fallback.SHARED;
+    assertThrows(IllegalArgumentException.class,
+        () -> new SpecializationBudget(0, 1, 1, shared));
+    assertThrows(IllegalArgumentException.class,
+        () -> new SpecializationBudget(1, 0, 1, shared));
+    assertThrows(IllegalArgumentException.class,
+        () -> new SpecializationBudget(1, 1, 0, shared));
+    assertThrows(IllegalArgumentException.class,
+        () -> new SpecializationBudget(1, 1, 1.5, shared));
+    assertThrows(IllegalArgumentException.class,
+        () -> new SpecializationBudget(1, 1, 1, null));
+  }
+}
@@ -0,0 +1,56 @@
+package org.seismotech.laespe;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.seismotech.laespe.example.widehierarchy.*;
+
+class SpecializationEventsTest {
+
+  @Test
+  void recordingTest()
+  throws Exception {
+    final Path file = Files.createTempFile("laespe", ".jfr");
+    try (final Recording recording = new Recording()) {
+      recording.enable(SpecializationEvents.Specialization.class);
+      recording.enable(SpecializationEvents.ClassCopy.class);
+      recording.start();
+      new BoundedSpecializer(Seq.class).specialized(IntSeq.class);
+      recording.stop();
+      recording.dump(file);
+    }
+
+    final List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+    Files.delete(file);
+    final Set<String> copied = new HashSet<>();
+    int specializations = 0;
+    for (final RecordedEvent event: events) {
+      switch (event.getEventType().getName()) {
+      case "org.seismotech.laespe.Specialization":
+        specializations++;
+        assertEquals(IntSeq.class.getName(), event.getString("requested"));
+        assertEquals(2, event.getInt("classesCopied"));
+        assertTrue(event.getString("loader")
+            .startsWith("SpecializingClassLoader#"));
+        break;
+      case "org.seismotech.laespe.ClassCopy":
+        copied.add(event.getString("className"));
+        assertTrue(event.getLong("size") > 0);
+        break;
+      }
+    }
+    assertEquals(1, specializations);
+    assertEquals(Set.of(IntSeq.class.getName(), AbsSeq.class.getName()),
+        copied);
+  }
+}
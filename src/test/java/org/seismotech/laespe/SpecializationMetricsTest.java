@@ -0,0 +1,56 @@
+package org.seismotech.laespe;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.seismotech.laespe.example.widehierarchy.*;
+
+class SpecializationMetricsTest {
+
+  @Test
+  void loaderMetricsTest()
+  throws Exception {
+    final BoundedSpecializer hisp = new BoundedSpecializer(Seq.class);
+    hisp.specialized(IntSeq.class);
+    hisp.specialized(IntSeq.class);
+    final SpecializationMetrics.Snapshot snapshot = hisp.metrics().snapshot();
+    assertEquals(2, snapshot.getLoadersCreated());
+    assertEquals(4, snapshot.getClassesCopied());
+    assertEquals(4, snapshot.getClassSetHits());
+    assertTrue(snapshot.getDefineNanos() > 0);
+    assertEquals(0, snapshot.getLinkNanos());
+    final long bytes = snapshot.getBytecodeBytesRead();
+    assertTrue(bytes > 0);
+
+    hisp.specialized(IntSeq.class);
+    assertEquals(bytes, hisp.metrics().getBytecodeBytesRead());
+    assertEquals(2, snapshot.getLoadersCreated());
+    assertEquals(3, hisp.metrics().getLoadersCreated());
+
+    final ObjectName name = hisp.metrics().register("loaderMetricsTest");
+    try {
+      assertEquals(6L, ManagementFactory.getPlatformMBeanServer()
+          .getAttribute(name, "ClassesCopied"));
+    } finally {
+      hisp.metrics().unregister(name);
+    }
+
+    hisp.specializeAll(List.of(IntSeq.class), 2);
+    assertTrue(hisp.metrics().getLinkNanos() > 0);
+  }
+
+  @Test
+  void hiddenMetricsTest()
+  throws ClassNotFoundException {
+    final BoundedSpecializer hisp = new BoundedSpecializer(
+      new HiddenClassEngine(new HierarchyClassSet(Seq.class)));
+    hisp.specialized(IntSeq.class);
+    assertEquals(0, hisp.metrics().getLoadersCreated());
+    assertEquals(1, hisp.metrics().getClassesCopied());
+  }
+}
@@ -0,0 +1,52 @@
+package org.seismotech.laespe;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.seismotech.laespe.example.widehierarchy.*;
+
+class SpecializationPoolTest {
+
+  @Test
+  void memoizationTest()
+  throws ClassNotFoundException {
+    final SpecializationPool pool
+      = new SpecializationPool(new BoundedSpecializer(Seq.class), 10);
+    final Class<?> int17 = pool.specialized(IntSeq.class, 17);
+    assertNotEquals(IntSeq.class, int17);
+    assertSame(int17, pool.specialized(IntSeq.class, 17));
+    assertNotEquals(int17, pool.specialized(IntSeq.class, 18));
+    assertNotEquals(int17, pool.specialized(LongSeq.class, 17));
+    assertEquals(3, pool.size());
+  }
+
+  @Test
+  void lruEvictionTest()
+  throws ClassNotFoundException {
+    final SpecializationPool pool = new SpecializationPool(
+      new BoundedSpecializer(Seq.class), 2, SpecializationPool.Eviction.LRU);
+    final Class<?> a = pool.specialized(IntSeq.class, "a");
+    final Class<?> b = pool.specialized(IntSeq.class, "b");
+    assertSame(a, pool.specialized(IntSeq.class, "a"));
+    pool.specialized(IntSeq.class, "c");
+    assertEquals(2, pool.size());
+    // "b" was evicted, but it is still reachable
+    assertSame(b, pool.specialized(IntSeq.class, "b"));
+    assertEquals(2, pool.size());
+  }
+
+  @Test
+  void lfuEvictionTest()
+  throws ClassNotFoundException {
+    final SpecializationPool pool = new SpecializationPool(
+      new BoundedSpecializer(Seq.class), 2, SpecializationPool.Eviction.LFU);
+    final Class<?> a = pool.specialized(IntSeq.class, "a");
+    for (int i = 0; i < 5; i++) pool.specialized(IntSeq.class, "a");
+    pool.specialized(IntSeq.class, "b");
+    pool.specialized(IntSeq.class, "c");
+    assertSame(a, pool.specialized(IntSeq.class, "a"));
+    assertEquals(2, pool.size());
+  }
+}
@@ -0,0 +1,62 @@
+package org.seismotech.laespe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.seismotech.laespe.example.widehierarchy.*;
+
+class SpecializationRegistryTest {
+
+  @Test
+  void keyIsolationTest()
+  throws Exception {
+    final SpecializationRegistry<String> registry
+      = new SpecializationRegistry<>(new BoundedSpecializer(Seq.class));
+    final Class<?> intA = registry.specialized("a", IntSeq.class);
+    final Class<?> longA = registry.specialized("a", LongSeq.class);
+    final Class<?> intB = registry.specialized("b", IntSeq.class);
+    assertSame(intA, registry.specialized("a", IntSeq.class));
+    assertNotEquals(IntSeq.class, intA);
+    assertNotEquals(intA, intB);
+    assertEquals(intA.getSuperclass(), longA.getSuperclass());
+    assertNotEquals(intA.getSuperclass(), intB.getSuperclass());
+    assertEquals(Set.of("a", "b"), registry.keys());
+
+    final Function<int[],Seq> fact
+      = registry.factory("a", IntSeq.class, Function.class, "apply", int[].class);
+    assertTrue(intA.isInstance(fact.apply(new int[] {1})));
+
+    registry.remove("a");
+    assertNotEquals(intA, registry.specialized("a", IntSeq.class));
+  }
+
+  @Test
+  void concurrentMissTest()
+  throws Exception {
+    final SpecializationRegistry<Integer> registry
+      = new SpecializationRegistry<>(new BoundedSpecializer(Seq.class));
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final List<Future<Class<?>>> specs = new ArrayList<>();
+      final Callable<Class<?>> task
+        = () -> registry.specialized(17, IntSeq.class);
+      for (int i = 0; i < 32; i++) specs.add(executor.submit(task));
+      final Class<?> first = specs.get(0).get();
+      for (final Future<Class<?>> spec: specs) assertSame(first, spec.get());
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package org.seismotech.laespe;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.seismotech.laespe.example.widehierarchy.*;
+
+class SpecializationTest {
+
+  @Test
+  void leakTest()
+  throws Exception {
+    final BoundedSpecializer hisp = new BoundedSpecializer(Seq.class);
+    final Specialization released = hisp.specialization(IntSeq.class);
+    final Specialization leaked = hisp.specialization(LongSeq.class);
+    Seq xs = released.<Function<int[],Seq>>factory(
+      Function.class, "apply", int[].class).apply(new int[] {1, 2});
+    final Seq ys = leaked.<Function<long[],Seq>>factory(
+      Function.class, "apply", long[].class).apply(new long[] {1, 2});
+    assertEquals(3, xs.sum());
+    assertEquals(1, released.liveFactories());
+
+    released.close();
+    leaked.close();
+    assertTrue(released.isClosed());
+    assertThrows(IllegalStateException.class, released::specializedClass);
+
+    xs = null;
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (!released.unloaded().isDone() && System.nanoTime() < deadline) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    released.unloaded().get(1, TimeUnit.SECONDS);
+    final List<String> leaks
+      = hisp.leakedSpecializations(100, TimeUnit.MILLISECONDS);
+    assertEquals(List.of(leaked.description()), leaks);
+    assertTrue(leaks.get(0).contains("SpecializingClassLoader#"));
+    assertFalse(leaked.unloaded().isDone());
+    assertEquals(0, released.liveFactories());
+    assertEquals(3, ys.sum());
+  }
+}
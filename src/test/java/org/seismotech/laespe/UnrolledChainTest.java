@@ -0,0 +1,85 @@
+package org.seismotech.laespe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import java.lang.reflect.Method;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class UnrolledChainTest {
+
+  @Test
+  void executionOrderTest()
+  throws InstantiationRelatedException {
+    final UnrolledChain<IntConsumer> chain
+      = new UnrolledChain<>(IntConsumer.class, 3);
+    for (final int n: new int[] {0, 1, 3, 4, 9, 10, 100}) {
+      final List<Integer> trace = new ArrayList<>();
+      final List<IntConsumer> actions = new ArrayList<>();
+      for (int i = 0; i < n; i++) {
+        final int k = i;
+        actions.add(x -> trace.add(k * x));
+      }
+      chain.executor(actions).accept(2);
+      assertEquals(n, trace.size());
+      for (int i = 0; i < n; i++) assertEquals(2 * i, (int) trace.get(i));
+    }
+  }
+
+  @Test
+  void rebuildTest()
+  throws InstantiationRelatedException {
+    final UnrolledChain<Runnable> chain = new UnrolledChain<>(Runnable.class);
+    final int[] count = new int[1];
+    final Runnable incr = () -> count[0]++;
+    final Runnable twice = () -> count[0] += 2;
+    final List<Runnable> actions = new ArrayList<>(List.of(incr, incr, incr));
+
+    final Runnable exec1 = chain.executor(actions);
+    final Runnable exec2 = chain.executor(actions);
+    assertNotSame(exec1, exec2);
+    assertSame(exec1.getClass(), exec2.getClass());
+
+    actions.set(0, twice);
+    final Runnable exec3 = chain.executor(actions);
+    assertNotSame(exec1.getClass(), exec3.getClass());
+    exec1.run();
+    exec3.run();
+    assertEquals(7, count[0]);
+  }
+
+  /** A public action, to be copied into a loader this library can't see. */
+  public interface Step {
+    void step(int[] acc);
+  }
+
+  public static class AddStep implements Step {
+    @Override public void step(int[] acc) {acc[0]++;}
+  }
+
+  @Test
+  void childLoaderTest()
+  throws Exception {
+    final ClassLoader loader = new SpecializingClassLoader(new NameClassSet(
+        Step.class.getClassLoader(), Step.class.getName(),
+        AddStep.class.getName()));
+    @SuppressWarnings("unchecked")
+    final Class<Object> stepClass
+      = (Class<Object>) loader.loadClass(Step.class.getName());
+    assertNotSame(Step.class, stepClass);
+    final Object add = loader.loadClass(AddStep.class.getName())
+      .getConstructor().newInstance();
+
+    final UnrolledChain<Object> chain = new UnrolledChain<>(stepClass, 2);
+    final Object exec = chain.executor(List.of(add, add, add));
+    final Method step = stepClass.getMethod("step", int[].class);
+    final int[] acc = new int[1];
+    step.invoke(exec, (Object) acc);
+    assertEquals(3, acc[0]);
+  }
+}
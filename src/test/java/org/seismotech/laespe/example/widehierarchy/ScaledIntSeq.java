@@ -0,0 +1,11 @@
+package org.seismotech.laespe.example.widehierarchy;
+
+public class ScaledIntSeq extends AbsSeq implements Seq {
+  private final int[] xs;
+  private final int scale;
+
+  public ScaledIntSeq(int[] xs, int scale) {this.xs = xs; this.scale = scale;}
+
+  @Override public int length() {return xs.length;}
+  @Override public long get(int i) {return (long) xs[i] * scale;}
+}
@@ -1,5 +1,8 @@
 package org.seismotech.laespe.example.widehierarchy;
 
+import org.seismotech.laespe.Specializable;
+
+@Specializable
 public interface Seq {
   int length();
   long get(int i);